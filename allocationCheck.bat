@@ -0,0 +1,3 @@
+javac -d benchmark/classes -sourcepath source;benchmark benchmark/bitzawolf/benchmark/AllocationCheck.java
+java -Djava.awt.headless=true -cp benchmark/classes bitzawolf.benchmark.AllocationCheck %*
+pause
\ No newline at end of file
@@ -0,0 +1,117 @@
+package bitzawolf;
+
+import bitzawolf.benchmark.Benchmark;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import javax.swing.ImageIcon;
+
+/**
+**	Benchmarks for the puzzle board: building a grid from an image, shuffling, sliding tiles and the checks the game
+**		runs every frame. Lives in the <code>bitzawolf</code> package so it can reach <code>TileGrid.shuffle</code>.
+**/
+public class TileGridBenchmarks
+{
+	public static final int[] GRID_SIZES = {3, 5, 7, 10, 15, 20, 100};
+	private static final int SCREEN_WIDTH = 1600, SCREEN_HEIGHT = 1000;
+	
+	public static ArrayList<Benchmark> create()
+	{
+		ArrayList<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (final int size : GRID_SIZES)
+		{
+			benchmarks.add(new GridBenchmark("TileGrid.construct", size)
+			{
+				public long run()
+				{
+					return new TileGrid(size, size, image, SCREEN_WIDTH, SCREEN_HEIGHT).getScaledImageWidth();
+				}
+			});
+			benchmarks.add(new GridBenchmark("TileGrid.shuffleRandomWalk", size)
+			{
+				public long run()
+				{
+					grid.shuffle(TileGrid.ShuffleMode.RANDOM_WALK);
+					return grid.getEmptyPosition().x;
+				}
+			});
+			benchmarks.add(new GridBenchmark("TileGrid.shuffleUniform", size)
+			{
+				public long run()
+				{
+					grid.shuffle(TileGrid.ShuffleMode.UNIFORM);
+					return grid.getEmptyPosition().x;
+				}
+			});
+			benchmarks.add(new GridBenchmark("TileGrid.moveTileViaSlot", size)
+			{
+				public long run()
+				{
+					// Slide the whole row the empty tile is in from one end to the other.
+					Point empty = grid.getEmptyPosition();
+					grid.moveTileViaSlot((empty.x == 0) ? size - 1 : 0, empty.y);
+					return empty.x;
+				}
+			});
+			benchmarks.add(new GridBenchmark("TileGrid.isComplete", size)
+			{
+				public long run()
+				{
+					return grid.isComplete() ? 1 : 0;
+				}
+			});
+			benchmarks.add(new GridBenchmark("TileGrid.isNotMoving", size)
+			{
+				public long run()
+				{
+					return grid.isNotMoving() ? 1 : 0;
+				}
+			});
+		}
+		benchmarks.add(new Benchmark("Tile.update")
+		{
+			private Tile tile;
+			
+			public void setup()
+			{
+				tile = new Tile(new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB), 0, 0, 0, 0);
+			}
+			
+			public long run()
+			{
+				if (! tile.isMoving())
+					tile.moveTo(tile.isInOriginalSlot() ? 1000 : 0, 0, tile.isInOriginalSlot() ? 10 : 0, 0);
+				tile.update(16);
+				return tile.isMoving() ? 1 : 0;
+			}
+		});
+		return benchmarks;
+	}
+	
+	/**
+	**	A benchmark with a shuffled grid of the given size ready to use.
+	**/
+	private static abstract class GridBenchmark extends Benchmark
+	{
+		protected ImageIcon image;
+		protected TileGrid grid;
+		
+		GridBenchmark(String name, int size)
+		{
+			super(name, "size", size + "x" + size);
+		}
+		
+		public void setup()
+		{
+			BufferedImage source = new BufferedImage(SCREEN_WIDTH, SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB);
+			Graphics2D g = source.createGraphics();
+			g.setPaint(new GradientPaint(0, 0, Color.YELLOW, SCREEN_WIDTH, SCREEN_HEIGHT, Color.BLUE));
+			g.fillRect(0, 0, SCREEN_WIDTH, SCREEN_HEIGHT);
+			g.dispose();
+			image = new ImageIcon(source);
+			int size = Integer.parseInt(getParameterValue().substring(0, getParameterValue().indexOf('x')));
+			grid = new TileGrid(size, size, image, SCREEN_WIDTH, SCREEN_HEIGHT);
+		}
+	}
+}
\ No newline at end of file
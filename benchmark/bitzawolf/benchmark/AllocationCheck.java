@@ -0,0 +1,279 @@
+package bitzawolf.benchmark;
+
+import bitzawolf.*;
+import convcomm.engine.util.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+import javax.swing.ImageIcon;
+
+/**
+**	Checks that the game's steady-state frames don't allocate. Each scenario runs frames of a loop through a
+**		<code>HeadlessRunner</code>, drawing to an image, and the bytes the thread allocated are read from the JVM before
+**		and after. A scenario fails if it allocates more per frame than its budget, which is zero apart from a little
+**		slack for the odd amortized allocation, like a move log growing its array.
+**
+**	<p>Usage: <code>AllocationCheck [-frames n]</code>. Prints bytes per frame for every scenario and exits with 1 if any
+**		is over budget, so it can be run by a build. Needs a HotSpot-based JVM, which can count allocations per thread.</p>
+**/
+public class AllocationCheck
+{
+	private static final int SCREEN_WIDTH = 800, SCREEN_HEIGHT = 600;
+	private static final int WARMUP_FRAMES = 20000;
+	
+	private final com.sun.management.ThreadMXBean threads;
+	private int frames = 20000;
+	
+	public static void main(String[] args) throws Exception
+	{
+		AllocationCheck check = new AllocationCheck();
+		for (int i = 0; i < args.length; ++i)
+		{
+			if (args[i].equals("-frames"))
+				check.frames = Integer.parseInt(args[++i]);
+			else
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+		}
+		
+		boolean passed = true;
+		for (Scenario scenario : createScenarios())
+		{
+			double perFrame = check.measure(scenario);
+			boolean over = perFrame > scenario.budget;
+			System.out.println(String.format(Locale.US, "%-30s %10.2f bytes/frame (budget %.1f)%s", scenario.name, perFrame, scenario.budget, over ? "  OVER BUDGET" : ""));
+			passed &= ! over;
+		}
+		if (! passed)
+			System.exit(1);
+	}
+	
+	public AllocationCheck()
+	{
+		threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		if (! threads.isThreadAllocatedMemorySupported())
+			throw new UnsupportedOperationException("This JVM can't count allocated bytes per thread");
+		threads.setThreadAllocatedMemoryEnabled(true);
+	}
+	
+	/**
+	**	Warms a scenario up so the JIT has compiled it, then measures it.
+	**	@return The average bytes allocated per frame.
+	**/
+	public double measure(Scenario scenario)
+	{
+		scenario.setup();
+		for (int i = 0; i < WARMUP_FRAMES; ++i)
+		{
+			if (scenario.isFinished())
+				scenario.restart();
+			scenario.frame();
+		}
+		long id = Thread.currentThread().getId();
+		long allocated = 0;
+		long before = threads.getThreadAllocatedBytes(id);
+		for (int i = 0; i < frames; ++i)
+		{
+			if (scenario.isFinished())
+			{
+				// setting up again isn't part of a frame, so it isn't counted
+				allocated += threads.getThreadAllocatedBytes(id) - before;
+				scenario.restart();
+				before = threads.getThreadAllocatedBytes(id);
+			}
+			scenario.frame();
+		}
+		allocated += threads.getThreadAllocatedBytes(id) - before;
+		return (double) allocated / frames;
+	}
+	
+	private static ArrayList<Scenario> createScenarios()
+	{
+		ArrayList<Scenario> scenarios = new ArrayList<Scenario>();
+		scenarios.add(new PuzzleScenario("SlidyPuzzleLoop idle", 1)
+		{
+			public void frame()
+			{
+				runner.step();
+			}
+		});
+		scenarios.add(new PuzzleScenario("SlidyPuzzleLoop sliding", 1)
+		{
+			private Board board;
+			
+			public void setup()
+			{
+				super.setup();
+				board = grid.getBoard();
+			}
+			
+			public void frame()
+			{
+				// slide a tile back and forth next to the empty space, keeping one moving all the time
+				if (grid.isNotMoving())
+				{
+					int blank = board.getBlankSlot();
+					int slot = board.getNeighbor(blank, (board.getNeighbor(blank, Board.RIGHT) == -1) ? Board.LEFT : Board.RIGHT);
+					board.moveTileToBlank(slot);
+					click(slot);
+				}
+				runner.step();
+			}
+		});
+		scenarios.add(new PuzzleScenario("SlidyPuzzleLoop solved", 1)
+		{
+			public void setup()
+			{
+				super.setup();
+				// one slide away from solved, then slide it home and let the celebration start
+				int[] tiles = new int[16];
+				for (int i = 0; i < tiles.length; ++i)
+					tiles[i] = i;
+				tiles[0] = 1;
+				tiles[1] = 0;
+				grid = new TileGrid(4, 4, grid.getOriginalImageScaled(), tiles, new MoveLog());
+				loop = new SlidyPuzzleLoop(grid, SCREEN_WIDTH, SCREEN_HEIGHT);
+				runner = new HeadlessRunner(loop);
+				runner.setCanvas(new BufferedImage(SCREEN_WIDTH, SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB));
+				click(0);
+				while (! loop.isSolved())
+					runner.step();
+			}
+			
+			public void frame()
+			{
+				runner.step();
+			}
+		});
+		
+		scenarios.add(new Scenario("BackgroundPuzzle", 1)
+		{
+			private ImageIcon image;
+			private Random random;
+			private BufferedImage canvas;
+			private HeadlessRunner runner;
+			
+			public void setup()
+			{
+				image = createImage();
+				random = new Random(0);
+				canvas = new BufferedImage(SCREEN_WIDTH, SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB);
+				restart();
+			}
+			
+			public boolean isFinished()
+			{
+				return runner.isFinished();
+			}
+			
+			public void restart()
+			{
+				runner = new HeadlessRunner(new BackgroundPuzzle(image, SCREEN_WIDTH, SCREEN_HEIGHT, random));
+				runner.setCanvas(canvas);
+			}
+			
+			public void frame()
+			{
+				runner.step();
+			}
+		});
+		scenarios.add(new Scenario("Engine frame bookkeeping", 1)
+		{
+			private FrameStats stats;
+			private FPSCounter fpsCounter;
+			private long time;
+			
+			public void setup()
+			{
+				stats = new FrameStats();
+				fpsCounter = new FPSCounter(stats);
+				time = 0;
+			}
+			
+			public void frame()
+			{
+				time += 8333333;
+				stats.recordFrame(8333333 + (time & 0xFFFFF));
+				stats.getUpdate().record(time & 0xFFFFF);
+				stats.getDraw().record(time & 0x3FFFFF);
+				stats.getPresent().record(time & 0x7FFFF);
+				stats.getSync().record(time & 0x3FFFFF);
+				fpsCounter.update(8);
+			}
+		});
+		return scenarios;
+	}
+	
+	/**
+	**	Makes a stand-in for a puzzle picture, so the check doesn't depend on image files.
+	**/
+	private static ImageIcon createImage()
+	{
+		BufferedImage image = new BufferedImage(SCREEN_WIDTH, SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		g.setPaint(new GradientPaint(0, 0, Color.YELLOW, SCREEN_WIDTH, SCREEN_HEIGHT, Color.BLUE));
+		g.fillRect(0, 0, SCREEN_WIDTH, SCREEN_HEIGHT);
+		g.dispose();
+		return new ImageIcon(image);
+	}
+	
+	/**
+	**	Something to do once a frame, with how many bytes a frame may allocate on average.
+	**/
+	private static abstract class Scenario
+	{
+		final String name;
+		final double budget;
+		
+		Scenario(String name, double budget)
+		{
+			this.name = name;
+			this.budget = budget;
+		}
+		
+		public void setup() {}
+		public abstract void frame();
+		/**Returns true if the scenario has run its course and needs <code>restart</code> before the next frame.**/
+		public boolean isFinished() {return false;}
+		public void restart() {}
+	}
+	
+	/**
+	**	A 4 x 4 puzzle run headless and drawn every frame.
+	**/
+	private static abstract class PuzzleScenario extends Scenario
+	{
+		protected SlidyPuzzleLoop loop;
+		protected TileGrid grid;
+		protected HeadlessRunner runner;
+		
+		PuzzleScenario(String name, double budget)
+		{
+			super(name, budget);
+		}
+		
+		public void setup()
+		{
+			grid = new TileGrid(4, 4, createImage(), SCREEN_WIDTH, SCREEN_HEIGHT, TileGrid.ShuffleMode.UNIFORM, new Random(0));
+			loop = new SlidyPuzzleLoop(grid, SCREEN_WIDTH, SCREEN_HEIGHT);
+			runner = new HeadlessRunner(loop);
+			runner.setCanvas(new BufferedImage(SCREEN_WIDTH, SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB));
+		}
+		
+		/**
+		**	Clicks the middle of a slot.
+		**/
+		protected void click(int slot)
+		{
+			int columns = 4;
+			int tileWidth = grid.getScaledImageWidth() / columns;
+			int tileHeight = grid.getScaledImageHeight() / 4;
+			int paddingLeft = (SCREEN_WIDTH - grid.getScaledImageWidth()) / 2;
+			int paddingTop = (SCREEN_HEIGHT - grid.getScaledImageHeight()) / 2;
+			loop.clickAt(paddingLeft + (slot % columns) * tileWidth + tileWidth / 2, paddingTop + (slot / columns) * tileHeight + tileHeight / 2);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,79 @@
+package bitzawolf.benchmark;
+
+/**
+**	One timed operation for <code>BenchmarkRunner</code>. Subclasses prepare their state in <code>setup</code> and do the
+**		work being measured in <code>run</code>, returning something computed from it so the JIT can't throw the work away.
+**/
+public abstract class Benchmark
+{
+	private final String name;
+	private final String parameterName, parameterValue;
+	
+	protected Benchmark(String name)
+	{
+		this(name, null, null);
+	}
+	
+	/**
+	**	@param parameterName What the parameter is, like "size".
+	**	@param parameterValue The value this instance runs with.
+	**/
+	protected Benchmark(String name, String parameterName, Object parameterValue)
+	{
+		this.name = name;
+		this.parameterName = parameterName;
+		this.parameterValue = (parameterValue == null) ? null : parameterValue.toString();
+	}
+	
+	public String getName()
+	{
+		return name;
+	}
+	
+	public String getParameterName()
+	{
+		return parameterName;
+	}
+	
+	public String getParameterValue()
+	{
+		return parameterValue;
+	}
+	
+	/**
+	**	Called once before warming up. Does nothing by default.
+	**/
+	public void setup() throws Exception
+	{
+	
+	}
+	
+	/**
+	**	Called once after measuring. Does nothing by default.
+	**/
+	public void tearDown() throws Exception
+	{
+	
+	}
+	
+	/**
+	**	Returns how many operations a single call to <code>run</code> performs, so results are reported per operation.
+	**		Returns 1 by default.
+	**/
+	public int getOperationsPerRun()
+	{
+		return 1;
+	}
+	
+	/**
+	**	Performs the work being measured.
+	**/
+	public abstract long run() throws Exception;
+	
+	public String toString()
+	{
+		if (parameterName == null)
+			return name;
+		return name + " (" + parameterName + " = " + parameterValue + ")";
+	}
+}
\ No newline at end of file
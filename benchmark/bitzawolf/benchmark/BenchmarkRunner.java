@@ -0,0 +1,173 @@
+package bitzawolf.benchmark;
+
+import bitzawolf.TileGridBenchmarks;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+**	Runs the benchmarks and reports the average time per operation, with an error margin of three standard errors.
+**		Every benchmark is warmed up for a while so the JIT has compiled it before measuring starts.
+**
+**	<p>Results can be saved as JSON, in the same layout JMH uses (one object per benchmark with its parameters and a
+**		<code>primaryMetric</code> holding the score, error, unit and raw iteration data), so existing tools for comparing
+**		JMH runs can track them across releases.</p>
+**
+**	<p>Usage: <code>BenchmarkRunner [-json file] [-filter text] [-warmup ms] [-iterations n] [-time ms]</code>. Only
+**		benchmarks whose name contains the filter text are run.</p>
+**/
+public class BenchmarkRunner
+{
+	private static volatile long sink; // keeps benchmark results alive
+	
+	private long warmupMillis = 2000;
+	private int iterations = 5;
+	private long iterationMillis = 1000;
+	
+	public static void main(String[] args) throws Exception
+	{
+		BenchmarkRunner runner = new BenchmarkRunner();
+		String jsonFile = null;
+		String filter = null;
+		for (int i = 0; i < args.length; ++i)
+		{
+			if (args[i].equals("-json"))
+				jsonFile = args[++i];
+			else if (args[i].equals("-filter"))
+				filter = args[++i];
+			else if (args[i].equals("-warmup"))
+				runner.warmupMillis = Long.parseLong(args[++i]);
+			else if (args[i].equals("-iterations"))
+				runner.iterations = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-time"))
+				runner.iterationMillis = Long.parseLong(args[++i]);
+			else
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+		}
+		
+		ArrayList<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.addAll(TileGridBenchmarks.create());
+		benchmarks.addAll(EngineBenchmarks.create());
+		
+		ArrayList<Result> results = new ArrayList<Result>();
+		for (Benchmark benchmark : benchmarks)
+		{
+			if (filter != null && ! benchmark.getName().contains(filter))
+				continue;
+			Result result = runner.measure(benchmark);
+			System.out.println(String.format(Locale.US, "%-50s %14.1f +- %10.1f ns/op", benchmark, result.score, result.error));
+			results.add(result);
+		}
+		if (jsonFile != null)
+			writeJson(new File(jsonFile), results);
+	}
+	
+	/**
+	**	Warms up and measures one benchmark.
+	**/
+	public Result measure(Benchmark benchmark) throws Exception
+	{
+		benchmark.setup();
+		try
+		{
+			runFor(benchmark, warmupMillis);
+			double[] scores = new double[iterations];
+			for (int i = 0; i < iterations; ++i)
+				scores[i] = runFor(benchmark, iterationMillis);
+			return new Result(benchmark, scores);
+		}
+		finally
+		{
+			benchmark.tearDown();
+		}
+	}
+	
+	/**
+	**	Calls the benchmark repeatedly for about the given time.
+	**	@return The average nanoseconds per operation.
+	**/
+	private double runFor(Benchmark benchmark, long millis) throws Exception
+	{
+		long limit = millis * 1000000L;
+		long runs = 0;
+		long result = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do
+		{
+			result ^= benchmark.run();
+			++runs;
+			elapsed = System.nanoTime() - start;
+		}
+		while (elapsed < limit);
+		sink ^= result;
+		return (double) elapsed / (runs * (double) benchmark.getOperationsPerRun());
+	}
+	
+	private static void writeJson(File file, ArrayList<Result> results) throws IOException
+	{
+		PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+		try
+		{
+			out.println("[");
+			for (int i = 0; i < results.size(); ++i)
+			{
+				Result result = results.get(i);
+				Benchmark benchmark = result.benchmark;
+				out.println("    {");
+				out.println("        \"benchmark\" : \"" + benchmark.getName() + "\",");
+				out.println("        \"mode\" : \"avgt\",");
+				out.println("        \"iterations\" : " + result.scores.length + ",");
+				if (benchmark.getParameterName() != null)
+					out.println("        \"params\" : { \"" + benchmark.getParameterName() + "\" : \"" + benchmark.getParameterValue() + "\" },");
+				out.println("        \"primaryMetric\" : {");
+				out.println(String.format(Locale.US, "            \"score\" : %.3f,", result.score));
+				if (Double.isNaN(result.error)) // one iteration has no spread, and JSON has no NaN
+					out.println("            \"scoreError\" : null,");
+				else
+					out.println(String.format(Locale.US, "            \"scoreError\" : %.3f,", result.error));
+				out.println("            \"scoreUnit\" : \"ns/op\",");
+				StringBuilder raw = new StringBuilder();
+				for (int j = 0; j < result.scores.length; ++j)
+				{
+					if (j != 0)
+						raw.append(", ");
+					raw.append(String.format(Locale.US, "%.3f", result.scores[j]));
+				}
+				out.println("            \"rawData\" : [ [ " + raw + " ] ]");
+				out.println("        }");
+				out.println((i == results.size() - 1) ? "    }" : "    },");
+			}
+			out.println("]");
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+	
+	/**
+	**	The measurements of one benchmark.
+	**/
+	public static class Result
+	{
+		public final Benchmark benchmark;
+		public final double[] scores;
+		public final double score, error;
+		
+		Result(Benchmark benchmark, double[] scores)
+		{
+			this.benchmark = benchmark;
+			this.scores = scores;
+			double sum = 0;
+			for (double s : scores)
+				sum += s;
+			score = sum / scores.length;
+			double squares = 0;
+			for (double s : scores)
+				squares += (s - score) * (s - score);
+			error = (scores.length > 1) ? 3 * Math.sqrt(squares / (scores.length - 1)) / Math.sqrt(scores.length) : Double.NaN;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,94 @@
+package bitzawolf.benchmark;
+
+import convcomm.engine.audio.SoundFilter;
+import convcomm.engine.input.VirtualKey;
+import convcomm.engine.util.ThreadPool;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+
+/**
+**	Benchmarks for the parts of the engine that run every frame or every sample: reading virtual keys, the sound filter
+**		sample accessors, and handing tasks to a thread pool.
+**/
+public class EngineBenchmarks
+{
+	private static final int SAMPLE_BYTES = 4096;
+	private static final int TASKS_PER_RUN = 1000;
+	
+	public static ArrayList<Benchmark> create()
+	{
+		ArrayList<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.add(new Benchmark("VirtualKey.getAmount")
+		{
+			private VirtualKey key = new VirtualKey("Benchmark");
+			
+			public long run()
+			{
+				key.press();
+				return key.getAmount();
+			}
+		});
+		benchmarks.add(new Benchmark("SoundFilter.samples")
+		{
+			private byte[] samples = new byte[SAMPLE_BYTES];
+			
+			public int getOperationsPerRun()
+			{
+				return SAMPLE_BYTES / 4;
+			}
+			
+			public long run()
+			{
+				long total = 0;
+				for (int position = 0; position < samples.length; position += 4)
+				{
+					short left = SoundFilter.getLeftSample(samples, position);
+					short right = SoundFilter.getRightSample(samples, position);
+					SoundFilter.setSample(samples, position, (short) (right + 1), (short) (left - 1));
+					total += left;
+				}
+				return total;
+			}
+		});
+		for (final int threads : new int[] {1, 4})
+		{
+			benchmarks.add(new Benchmark("ThreadPool.runTask", "threads", threads)
+			{
+				private ThreadPool pool;
+				
+				public void setup()
+				{
+					pool = new ThreadPool(threads);
+				}
+				
+				public void tearDown()
+				{
+					pool.close();
+				}
+				
+				public int getOperationsPerRun()
+				{
+					return TASKS_PER_RUN;
+				}
+				
+				public long run() throws InterruptedException
+				{
+					final CountDownLatch done = new CountDownLatch(TASKS_PER_RUN);
+					Runnable task = new Runnable()
+					{
+						public void run()
+						{
+							done.countDown();
+						}
+					};
+					for (int i = 0; i < TASKS_PER_RUN; ++i)
+						pool.runTask(task);
+					done.await();
+					return done.getCount();
+				}
+			});
+		}
+		return benchmarks;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,3 @@
+javac -d benchmark/classes -sourcepath source;benchmark benchmark/bitzawolf/benchmark/BenchmarkRunner.java
+java -Djava.awt.headless=true -cp benchmark/classes bitzawolf.benchmark.BenchmarkRunner -json benchmark/results.json %*
+pause
\ No newline at end of file
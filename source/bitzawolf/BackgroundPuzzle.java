@@ -0,0 +1,101 @@
+package bitzawolf;
+
+import convcomm.engine.util.EmptyGameLoop;
+import convcomm.engine.util.Interpolatable;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Random;
+import javax.swing.ImageIcon;
+
+/**
+**	The puzzle that solves itself behind the main menu. It's shuffled with a random walk, then plays the walk's moves
+**		back one slide at a time until the picture is whole again, and keeps drawing the finished picture after that.
+**
+**	<p>As a <code>GameLoop</code> it doesn't need a screen, so it can be run headless as well as drawn by the menu.
+**		<code>continueLoop()</code> returns false once the puzzle is solved and the last tile has stopped.</p>
+**/
+public class BackgroundPuzzle extends EmptyGameLoop implements Interpolatable
+{
+	private TileGrid grid;
+	private ArrayList<Point> movesReverseOrder;
+	private int movesIndex, paddingLeft, paddingTop;
+	private boolean finished;
+	private float alpha;
+	
+	public BackgroundPuzzle(ImageIcon image, int screenWidth, int screenHeight)
+	{
+		this(image, screenWidth, screenHeight, new Random());
+	}
+	
+	/**
+	**	@param random Shuffles the puzzle, so the same seed gives the same puzzle every time.
+	**/
+	public BackgroundPuzzle(ImageIcon image, int screenWidth, int screenHeight, Random random)
+	{
+		grid = new TileGrid(4, 3, image, screenWidth, screenHeight, TileGrid.ShuffleMode.RANDOM_WALK, random);
+		movesReverseOrder = grid.getReverseMoves();
+		movesIndex = 1;
+		paddingLeft = 0;
+		paddingTop = 0;
+		if (grid.getScaledImageWidth() < screenWidth)
+			paddingLeft = (screenWidth - grid.getScaledImageWidth()) / 2;
+		if (grid.getScaledImageHeight() < screenHeight)
+			paddingTop = (screenHeight - grid.getScaledImageHeight()) / 2;
+		finished = false;
+		alpha = 1.0f;
+	}
+	
+	public TileGrid getTileGrid()
+	{
+		return grid;
+	}
+	
+	/**
+	**	Returns true once every move has been played back, even if the last tile is still sliding.
+	**/
+	public boolean isFinished()
+	{
+		return finished;
+	}
+	
+	@Override
+	public void globalUpdate(long time)
+	{
+		if (! finished)
+		{
+			grid.update(time);
+			if (grid.isNotMoving())
+			{
+				if (movesIndex == movesReverseOrder.size())
+				{
+					finished = true;
+					return;
+				}
+				Point useMe = movesReverseOrder.get(movesIndex);
+				++movesIndex;
+				grid.moveTileViaSlot(useMe.x, useMe.y);
+				finished = grid.isComplete();
+			}
+		}
+		else if (! grid.isNotMoving())
+			grid.update(time);
+	}
+	
+	public void setInterpolation(float alpha)
+	{
+		this.alpha = alpha;
+	}
+	
+	@Override
+	public void globalDraw(Graphics2D g)
+	{
+		grid.draw(g, paddingLeft, paddingTop, alpha);
+	}
+	
+	@Override
+	public boolean continueLoop()
+	{
+		return ! finished || ! grid.isNotMoving();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,373 @@
+package bitzawolf;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+**	The logical state of a puzzle: which tile sits in which slot. Slots and tiles are both numbered
+**		<code>column + row * columns</code>, a tile's number being the slot it belongs in when the puzzle is solved.
+**		Tile 0 is the empty space, which belongs in the top-left slot.
+**
+**	<p>The board is stored as a plain permutation along with its inverse, so finding the tile in a slot, the slot of a
+**		tile, or the empty slot never needs a search. Every change is a single step of the empty space into a neighboring
+**		slot, which keeps the board solvable and costs O(1).</p>
+**
+**	<p>The board also keeps a 64-bit Zobrist hash of itself, updated along with every move, see <code>getHash</code>.</p>
+**/
+public class Board
+{
+	/**Directions the empty space can step in. Opposite directions differ by 2.**/
+	public static final int UP = 0, RIGHT = 1, DOWN = 2, LEFT = 3;
+	
+	/**The tile number of the empty space.**/
+	public static final int BLANK = 0;
+	
+	private final int columns, rows;
+	private final int[] tiles; // slot -> tile
+	private final int[] slots; // tile -> slot
+	private int misplaced;
+	private final long seed;
+	private long hash;
+	
+	/**
+	**	Creates a solved board of the given size.
+	**/
+	public Board(int columns, int rows)
+	{
+		if (columns < 2 || rows < 2)
+			throw new IllegalArgumentException("A board needs at least 2 columns and 2 rows: " + columns + " x " + rows);
+		this.columns = columns;
+		this.rows = rows;
+		int size = columns * rows;
+		tiles = new int[size];
+		slots = new int[size];
+		for (int i = 0; i < size; ++i)
+		{
+			tiles[i] = i;
+			slots[i] = i;
+		}
+		misplaced = 0;
+		seed = mix(((long) columns << 32) | rows);
+		hash = computeHash();
+	}
+	
+	/**
+	**	Creates a board holding the given permutation, where <code>permutation[slot]</code> is the tile in that slot.
+	**	@throws IllegalArgumentException if the array is not a permutation of 0 to <code>columns * rows - 1</code>.
+	**/
+	public Board(int columns, int rows, int[] permutation)
+	{
+		this(columns, rows);
+		setTiles(permutation);
+	}
+	
+	/**
+	**	Creates a copy of another board.
+	**/
+	public Board(Board other)
+	{
+		columns = other.columns;
+		rows = other.rows;
+		tiles = other.tiles.clone();
+		slots = other.slots.clone();
+		misplaced = other.misplaced;
+		seed = other.seed;
+		hash = other.hash;
+	}
+	
+	/**
+	**	Replaces the whole board with the given permutation. Solvability is not checked.
+	**	@throws IllegalArgumentException if the array is not a permutation of 0 to <code>columns * rows - 1</code>.
+	**/
+	public void setTiles(int[] permutation)
+	{
+		if (permutation.length != tiles.length)
+			throw new IllegalArgumentException("Expected " + tiles.length + " tiles but got " + permutation.length);
+		Arrays.fill(slots, -1);
+		for (int slot = 0; slot < permutation.length; ++slot)
+		{
+			int tile = permutation[slot];
+			if (tile < 0 || tile >= tiles.length || slots[tile] != -1)
+				throw new IllegalArgumentException("Not a permutation, tile " + tile + " at slot " + slot);
+			slots[tile] = slot;
+		}
+		misplaced = 0;
+		for (int slot = 0; slot < permutation.length; ++slot)
+		{
+			tiles[slot] = permutation[slot];
+			if (tiles[slot] != slot && tiles[slot] != BLANK)
+				++misplaced;
+		}
+		hash = computeHash();
+	}
+	
+	/**
+	**	Replaces the board with a permutation picked uniformly at random from all solvable ones, in O(n). The tiles are
+	**		shuffled with Fisher-Yates while counting the swaps, which gives the permutation's parity for free. If that parity
+	**		doesn't match the empty space's distance from home, see <code>isSolvable</code>, swapping any two tiles other than
+	**		the empty space fixes it. That pairs every unsolvable permutation with exactly one solvable one, so the result stays
+	**		uniform. This takes care of the empty space's row on boards with an even number of columns, since the distance
+	**		counts rows as well as columns.
+	**/
+	public void randomize(Random random)
+	{
+		// Start from the solved board, so the swaps counted give the parity of the result and not of the change.
+		for (int i = 0; i < tiles.length; ++i)
+			tiles[i] = i;
+		int swaps = 0;
+		for (int i = tiles.length - 1; i > 0; --i)
+		{
+			int j = random.nextInt(i + 1);
+			if (j != i)
+			{
+				int temp = tiles[i];
+				tiles[i] = tiles[j];
+				tiles[j] = temp;
+				++swaps;
+			}
+		}
+		int blankSlot = 0;
+		while (tiles[blankSlot] != BLANK)
+			++blankSlot;
+		int blankDistance = blankSlot % columns + blankSlot / columns;
+		if ((swaps & 1) != (blankDistance & 1))
+		{
+			// Boards have at least 4 slots, so the first three always hold two tiles that aren't the empty space.
+			int a = (blankSlot == 0) ? 1 : 0;
+			int b = (blankSlot == a + 1) ? a + 2 : a + 1;
+			int temp = tiles[a];
+			tiles[a] = tiles[b];
+			tiles[b] = temp;
+		}
+		misplaced = 0;
+		for (int slot = 0; slot < tiles.length; ++slot)
+		{
+			slots[tiles[slot]] = slot;
+			if (tiles[slot] != slot && tiles[slot] != BLANK)
+				++misplaced;
+		}
+		hash = computeHash();
+	}
+	
+	public int getColumns()
+	{
+		return columns;
+	}
+	
+	public int getRows()
+	{
+		return rows;
+	}
+	
+	/**
+	**	Returns the number of slots on the board, including the empty one.
+	**/
+	public int getSize()
+	{
+		return tiles.length;
+	}
+	
+	public int getTile(int slot)
+	{
+		return tiles[slot];
+	}
+	
+	public int getTile(int column, int row)
+	{
+		return tiles[column + row * columns];
+	}
+	
+	public int getSlot(int tile)
+	{
+		return slots[tile];
+	}
+	
+	public int getBlankSlot()
+	{
+		return slots[BLANK];
+	}
+	
+	public int getBlankColumn()
+	{
+		return slots[BLANK] % columns;
+	}
+	
+	public int getBlankRow()
+	{
+		return slots[BLANK] / columns;
+	}
+	
+	/**
+	**	Returns the board's Zobrist hash: the XOR of a random-looking key for every tile and the slot it's in. Boards that
+	**		are equal always have the same hash, and different boards have different hashes except by rare chance, so the hash
+	**		can stand in for the whole board when caching or looking for repeats.
+	**
+	**	<p>Keys are worked out from the board size, tile and slot rather than drawn from a random generator, so the hash of a
+	**		board is the same on every run and every machine and can be saved and compared later. A move changes only four
+	**		keys, so keeping the hash up to date costs O(1).</p>
+	**/
+	public long getHash()
+	{
+		return hash;
+	}
+	
+	/**
+	**	Returns true if every tile is in the slot it belongs in.
+	**/
+	public boolean isSolved()
+	{
+		return misplaced == 0;
+	}
+	
+	/**
+	**	Returns true if the board can be solved by sliding tiles. Half of all permutations can't: a board is solvable exactly
+	**		when the parity of the permutation matches the parity of the empty space's distance from its home slot, since every
+	**		step swaps two entries and moves the empty space by one.
+	**/
+	public boolean isSolvable()
+	{
+		boolean[] visited = new boolean[tiles.length];
+		int swaps = 0;
+		for (int start = 0; start < tiles.length; ++start)
+		{
+			if (visited[start])
+				continue;
+			int slot = start;
+			while (! visited[slot])
+			{
+				visited[slot] = true;
+				slot = tiles[slot];
+				++swaps;
+			}
+			--swaps; // a cycle of length n takes n - 1 swaps
+		}
+		int blankDistance = getBlankColumn() + getBlankRow();
+		return (swaps & 1) == (blankDistance & 1);
+	}
+	
+	/**
+	**	Returns the slot next to the given slot in the given direction, or -1 if that would be off the board.
+	**/
+	public int getNeighbor(int slot, int direction)
+	{
+		switch (direction)
+		{
+			case UP: return (slot >= columns) ? slot - columns : -1;
+			case DOWN: return (slot + columns < tiles.length) ? slot + columns : -1;
+			case LEFT: return (slot % columns != 0) ? slot - 1 : -1;
+			case RIGHT: return (slot % columns != columns - 1) ? slot + 1 : -1;
+		}
+		return -1;
+	}
+	
+	/**
+	**	Returns the direction the empty space has to step in to reach the given slot, or -1 if the slot is not next to it.
+	**/
+	public int getDirectionTo(int slot)
+	{
+		int blank = slots[BLANK];
+		if (slot == blank - columns)
+			return UP;
+		if (slot == blank + columns)
+			return DOWN;
+		if (slot == blank - 1 && blank % columns != 0)
+			return LEFT;
+		if (slot == blank + 1 && slot % columns != 0)
+			return RIGHT;
+		return -1;
+	}
+	
+	public static int opposite(int direction)
+	{
+		return direction ^ 2;
+	}
+	
+	/**
+	**	Swaps the empty space with the tile in the neighboring slot. The slot must be next to the empty space.
+	**	@return The tile that was moved.
+	**/
+	public int moveTileToBlank(int slot)
+	{
+		int blank = slots[BLANK];
+		int tile = tiles[slot];
+		if (tile == slot)
+			++misplaced;
+		else if (tile == blank)
+			--misplaced;
+		tiles[blank] = tile;
+		slots[tile] = blank;
+		tiles[slot] = BLANK;
+		slots[BLANK] = slot;
+		hash ^= key(tile, slot) ^ key(tile, blank) ^ key(BLANK, blank) ^ key(BLANK, slot);
+		return tile;
+	}
+	
+	/**
+	**	Steps the empty space in the given direction.
+	**	@return The tile that was moved, or -1 if the empty space is at the edge of the board in that direction.
+	**/
+	public int moveBlank(int direction)
+	{
+		int slot = getNeighbor(slots[BLANK], direction);
+		if (slot == -1)
+			return -1;
+		return moveTileToBlank(slot);
+	}
+	
+	/**
+	**	Returns a copy of the permutation, where <code>array[slot]</code> is the tile in that slot.
+	**/
+	public int[] toArray()
+	{
+		return tiles.clone();
+	}
+	
+	public boolean equals(Object o)
+	{
+		if (! (o instanceof Board))
+			return false;
+		Board other = (Board) o;
+		return hash == other.hash && columns == other.columns && rows == other.rows && Arrays.equals(tiles, other.tiles);
+	}
+	
+	public int hashCode()
+	{
+		return (int) (hash ^ (hash >>> 32));
+	}
+	
+	private long computeHash()
+	{
+		long h = 0;
+		for (int slot = 0; slot < tiles.length; ++slot)
+			h ^= key(tiles[slot], slot);
+		return h;
+	}
+	
+	/**
+	**	Returns the key for a tile in a slot. Each pair gets its own number in a sequence starting from the seed, which is then
+	**		scrambled the same way SplitMix64 turns its counter into random numbers.
+	**/
+	private long key(int tile, int slot)
+	{
+		return mix(seed + ((long) tile * tiles.length + slot + 1) * 0x9E3779B97F4A7C15L);
+	}
+	
+	private static long mix(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < tiles.length; ++i)
+		{
+			if (i != 0)
+				sb.append(' ');
+			sb.append(tiles[i]);
+		}
+		return sb.toString();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,133 @@
+package bitzawolf;
+
+import bitzawolf.solver.*;
+import convcomm.engine.util.HeadlessRunner;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import javax.swing.ImageIcon;
+
+/**
+**	Command line tool that plays whole games of Slidy Puzzles without a window, to load test the game logic and to
+**		check it still behaves the same. Each game is shuffled from a seeded random, solved, and then played by clicking
+**		each tile of the solution on a <code>SlidyPuzzleLoop</code> run by a <code>HeadlessRunner</code>, waiting for every
+**		slide to finish, until the puzzle shows its picture and is clicked away.
+**
+**	<p>Usage: <code>java -Djava.awt.headless=true -cp "Slidy Puzzles.jar" bitzawolf.HeadlessSimulation [games] [-size
+**		columns rows] [-seed seed] [-background]</code>. <code>-background</code> plays the main menu's self-solving
+**		puzzle instead. The same seed always gives the same games, and the hash printed at the end is of every board the
+**		games went through, so two runs can be compared.</p>
+**/
+public class HeadlessSimulation
+{
+	private static final int SCREEN_WIDTH = 800, SCREEN_HEIGHT = 600;
+	private static final long MAX_FRAMES_PER_GAME = 10000000;
+	
+	public static void main(String[] args)
+	{
+		int games = 1000;
+		int columns = 3, rows = 3;
+		long seed = 0;
+		boolean background = false;
+		for (int i = 0; i < args.length; ++i)
+		{
+			if (args[i].equals("-size"))
+			{
+				columns = Integer.parseInt(args[++i]);
+				rows = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("-seed"))
+				seed = Long.parseLong(args[++i]);
+			else if (args[i].equals("-background"))
+				background = true;
+			else if (args[i].startsWith("-"))
+			{
+				System.out.println("Usage: HeadlessSimulation [games] [-size columns rows] [-seed seed] [-background]");
+				System.exit(1);
+			}
+			else
+				games = Integer.parseInt(args[i]);
+		}
+		
+		ImageIcon image = new ImageIcon(HeadlessSimulation.class.getResource("StandardImage0.png"));
+		Random random = new Random(seed);
+		long hash = 0, frames = 0, moves = 0;
+		long start = System.nanoTime();
+		if (background)
+		{
+			for (int i = 0; i < games; ++i)
+			{
+				BackgroundPuzzle puzzle = new BackgroundPuzzle(image, SCREEN_WIDTH, SCREEN_HEIGHT, random);
+				HeadlessRunner runner = new HeadlessRunner(puzzle);
+				if (! runner.run(MAX_FRAMES_PER_GAME) || ! puzzle.getTileGrid().isComplete())
+					throw new IllegalStateException("Background puzzle " + i + " didn't solve itself");
+				hash = hash * 31 + puzzle.getTileGrid().getBoardHash();
+				frames += runner.getFrames();
+				moves += puzzle.getTileGrid().getReverseMoves().size();
+			}
+		}
+		else
+		{
+			BufferedImage scaled = new TileGrid(columns, rows, image, SCREEN_WIDTH, SCREEN_HEIGHT).getOriginalImageScaled();
+			Solver solver = new Solver(columns, rows, new ManhattanHeuristic(columns, rows));
+			Board board = new Board(columns, rows);
+			for (int i = 0; i < games; ++i)
+			{
+				do
+					board.randomize(random);
+				while (board.isSolved());
+				int[] solution = solver.solve(board);
+				if (solution == null)
+					throw new IllegalStateException("Couldn't solve game " + i + ": " + board);
+				TileGrid grid = new TileGrid(columns, rows, scaled, board.toArray(), new MoveLog());
+				SlidyPuzzleLoop loop = new SlidyPuzzleLoop(grid, SCREEN_WIDTH, SCREEN_HEIGHT);
+				HeadlessRunner runner = new HeadlessRunner(loop);
+				hash = play(runner, loop, solution, hash);
+				frames += runner.getFrames();
+				moves += solution.length;
+			}
+		}
+		long nanos = System.nanoTime() - start;
+		System.out.println(games + " games, " + moves + " moves, " + frames + " frames in " + (nanos / 1000000) + " ms, "
+			+ String.format("%.0f", games * 1e9 / nanos) + " games per second, hash " + String.format("%016x", hash));
+	}
+	
+	/**
+	**	Clicks through a solution, letting each slide finish before the next, then clicks the finished picture away.
+	**	@return The hash so far with every board along the way added to it.
+	**/
+	private static long play(HeadlessRunner runner, SlidyPuzzleLoop loop, int[] solution, long hash)
+	{
+		TileGrid grid = loop.getTileGrid();
+		Board board = grid.getBoard();
+		int tileWidth = grid.getScaledImageWidth() / board.getColumns();
+		int tileHeight = grid.getScaledImageHeight() / board.getRows();
+		int paddingLeft = Math.max(0, (SCREEN_WIDTH - grid.getScaledImageWidth()) / 2);
+		int paddingTop = Math.max(0, (SCREEN_HEIGHT - grid.getScaledImageHeight()) / 2);
+		for (int direction : solution)
+		{
+			int slot = board.getNeighbor(board.getBlankSlot(), direction);
+			board.moveBlank(direction);
+			loop.clickAt(paddingLeft + (slot % board.getColumns()) * tileWidth + tileWidth / 2,
+				paddingTop + (slot / board.getColumns()) * tileHeight + tileHeight / 2);
+			runUntilStill(runner, grid);
+			if (grid.getBoardHash() != board.getHash())
+				throw new IllegalStateException("The grid went somewhere the solution didn't: " + grid.getBoard() + " instead of " + board);
+			hash = hash * 31 + grid.getBoardHash();
+		}
+		for (long i = 0; ! loop.isSolved() && i < MAX_FRAMES_PER_GAME; ++i)
+			runner.step();
+		if (! loop.isSolved())
+			throw new IllegalStateException("The puzzle didn't notice it was solved: " + grid.getBoard());
+		loop.clickAt(0, 0);
+		runner.run(MAX_FRAMES_PER_GAME);
+		return hash;
+	}
+	
+	private static void runUntilStill(HeadlessRunner runner, TileGrid grid)
+	{
+		runner.step();
+		for (long i = 0; ! grid.isNotMoving() && i < MAX_FRAMES_PER_GAME; ++i)
+			runner.step();
+	}
+}
\ No newline at end of file
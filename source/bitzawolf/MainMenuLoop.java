@@ -1,20 +1,34 @@
 package bitzawolf;
 
 import bitzawolf.dialog.*;
+import bitzawolf.save.AtlasCache;
+import bitzawolf.save.AtlasCacheMonitor;
+import bitzawolf.save.SavedGame;
+import convcomm.engine.graphics.ImageCache;
+import convcomm.engine.graphics.ImageCacheMonitor;
 import convcomm.engine.util.*;
 
 import java.io.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.net.URL;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import javax.management.ObjectName;
 import javax.swing.*;
 
 /**
 **	Runs the main menu which is shown upon starting the game. Facilitates starting a new game, changing
 **		the game's window size, running the title-screen background "puzzle", and quitting.
 **/
-public class MainMenuLoop extends GameEngine implements ActionListener
+public class MainMenuLoop extends GameEngine implements ActionListener, Interpolatable
 {
+	private static final long UPDATE_STEP = 5; // milliseconds, so tiles slide the same however fast the screen refreshes
+	private static final Color PANEL_BORDER = new Color(0.8f, 0.8f, 0.8f);
+	
 	private Font textFont = new Font("Dialog", Font.PLAIN, 50);
 	
 	private SlidyPuzzleLoop gameLoop;
@@ -22,11 +36,13 @@ public class MainMenuLoop extends GameEngine implements ActionListener
 	private JButton playButton, optionsButton, quitButton;
 	private JFileChooser jfc;
 	private JPanel mainPanel;
-	private TileGrid backgroundTileGrid;
-	private int bgPaddingLeft, bgPaddingTop, bgMovesIndex;
+	private BackgroundPuzzle backgroundPuzzle;
+	private volatile Future<BackgroundPuzzle> nextBackground; // being made on the image loader's threads
+	private Future<BackgroundPuzzle> shownBackground; // the one backgroundPuzzle came from
 	private long checkInGameTimer;
-	private boolean bgFinished, panelDisabled, inGame;
-	private ArrayList<Point> bgMovesReverseOrder;
+	private boolean panelDisabled, inGame;
+	private Rectangle bounds, buttonBounds; // reused by globalDraw every frame
+	private ObjectName atlasMonitorName, imageMonitorName;
 	
 	public static void main(String[] args)
 	{
@@ -39,15 +55,34 @@ public class MainMenuLoop extends GameEngine implements ActionListener
 		jfc = new JFileChooser();
 		jfc.setFileFilter(new ImageFilter());
 		jfc.setAcceptAllFileFilterUsed(false);
-		jfc.setAccessory(new ImagePreview(jfc));
 		gameLoop = null;
 		inGame = false;
 	}
 	
+	@Override
+	public void run(int width, int height, boolean fullScreen)
+	{
+		try
+		{
+			super.run(width, height, fullScreen);
+		}
+		finally
+		{
+			Monitoring.unregister(atlasMonitorName);
+			Monitoring.unregister(imageMonitorName);
+		}
+	}
+	
 	@Override
 	public void init()
 	{
 		super.init();
+		bounds = new Rectangle();
+		buttonBounds = new Rectangle();
+		setFixedTimestep(UPDATE_STEP);
+		jfc.setAccessory(new ImagePreview(jfc, super.imageLoader));
+		atlasMonitorName = Monitoring.register("ImageCache", "AtlasCache", new AtlasCacheMonitor());
+		imageMonitorName = Monitoring.register("ImageCache", "Images", new ImageCacheMonitor(ImageCache.getShared()));
 		super.screen.getGameWindow().setTitle("Slidy Puzzles");
 		super.screen.getGameWindow().setIconImage(new ImageIcon(this.getClass().getResource("SlidyPuzzleIcon.png")).getImage());
 		mainPanel = new JPanel(new BorderLayout());
@@ -83,19 +118,45 @@ public class MainMenuLoop extends GameEngine implements ActionListener
 		resetBackgroundPuzzle();
 	}
 	
+	/**
+	**	Starts making a new background puzzle for the current screen size. The old one keeps playing until it's ready.
+	**/
 	private void resetBackgroundPuzzle()
 	{
-		Random r = new Random();
-		backgroundTileGrid = new TileGrid(4, 3, new ImageIcon(this.getClass().getResource("StandardImage" + r.nextInt(4) + ".png")), super.screen.getWidth(), super.screen.getHeight());
-		bgMovesReverseOrder = backgroundTileGrid.getReverseMoves();
-		bgMovesIndex = 1;
-		bgPaddingLeft = 0;
-		bgPaddingTop = 0;
-		if (backgroundTileGrid.getScaledImageWidth() < super.screen.getWidth())
-			bgPaddingLeft = (super.screen.getWidth() - backgroundTileGrid.getScaledImageWidth()) / 2;
-		if (backgroundTileGrid.getScaledImageHeight() < super.screen.getHeight())
-			bgPaddingTop = (super.screen.getHeight() - backgroundTileGrid.getScaledImageHeight()) / 2;
-		bgFinished = false;
+		final Random r = new Random();
+		final URL imagePath = this.getClass().getResource("StandardImage" + r.nextInt(4) + ".png");
+		final int width = super.screen.getWidth();
+		final int height = super.screen.getHeight();
+		nextBackground = super.imageLoader.submit(new Callable<BackgroundPuzzle>()
+		{
+			public BackgroundPuzzle call() throws IOException
+			{
+				return new BackgroundPuzzle(new ImageIcon(ImageLoader.read(imagePath, null), imagePath.toExternalForm()), width, height, r);
+			}
+		});
+	}
+	
+	/**
+	**	Swaps in the background puzzle being made once it's ready.
+	**/
+	private void checkBackgroundPuzzle()
+	{
+		Future<BackgroundPuzzle> next = nextBackground;
+		if (next == shownBackground || ! next.isDone())
+			return;
+		shownBackground = next;
+		try
+		{
+			backgroundPuzzle = next.get();
+		}
+		catch (ExecutionException ee)
+		{
+			System.out.println("Couldn't make the background puzzle: " + ee.getCause());
+		}
+		catch (InterruptedException ie)
+		{
+		
+		}
 	}
 	
 	private void enablePanel()
@@ -144,45 +205,43 @@ public class MainMenuLoop extends GameEngine implements ActionListener
 		{
 			if (panelDisabled)
 				enablePanel(); // to fix a glitch where a slidy puzzle game ends and returns to main screen.
-			if (! bgFinished)
-			{
-				backgroundTileGrid.update(time);
-				if (backgroundTileGrid.isNotMoving())
-				{
-					if (bgMovesIndex == bgMovesReverseOrder.size())
-					{
-						bgFinished = true;
-						return;
-					}
-					Point useMe = bgMovesReverseOrder.get(bgMovesIndex);
-					++bgMovesIndex;
-					backgroundTileGrid.moveTileViaSlot(useMe.x, useMe.y);
-					bgFinished = backgroundTileGrid.isComplete();
-				}
-			}
-			else if (! backgroundTileGrid.isNotMoving())
-				backgroundTileGrid.update(time);
+			checkBackgroundPuzzle();
+			if (backgroundPuzzle != null)
+				backgroundPuzzle.globalUpdate(time);
 		}
 	}
 	
+	public void setInterpolation(float alpha)
+	{
+		if (backgroundPuzzle != null)
+			backgroundPuzzle.setInterpolation(alpha);
+	}
+	
 	@Override
 	public void globalDraw(Graphics2D g)
 	{
-		backgroundTileGrid.draw(g, bgPaddingLeft, bgPaddingTop);
 		Color oldColor = g.getColor();
-		Rectangle bounds = title.getBounds();
+		if (backgroundPuzzle != null)
+			backgroundPuzzle.globalDraw(g);
+		else
+		{
+			g.setColor(Color.BLACK);
+			g.fillRect(0, 0, super.screen.getWidth(), super.screen.getHeight());
+		}
+		title.getBounds(bounds);
 		bounds.x += 5;
 		bounds.y += 6;
-		g.setColor(new Color(0.8f, 0.8f, 0.8f));
+		g.setColor(PANEL_BORDER);
 		g.fillRect(bounds.x - 15, bounds.y - 15, bounds.width + 15, bounds.height + 15);
 		g.setColor(Color.BLACK);
 		g.fillRect(bounds.x - 11, bounds.y - 11, bounds.width + 7, bounds.height + 7);
 		
-		bounds.x = optionsButton.getBounds().x - 5;
-		bounds.width = optionsButton.getBounds().width + 30;
-		bounds.height = playButton.getBounds().height + optionsButton.getBounds().height + quitButton.getBounds().height + 35;
+		optionsButton.getBounds(buttonBounds);
+		bounds.x = buttonBounds.x - 5;
+		bounds.width = buttonBounds.width + 30;
+		bounds.height = playButton.getHeight() + buttonBounds.height + quitButton.getHeight() + 35;
 		bounds.y = super.screen.getHeight() - bounds.height;
-		g.setColor(new Color(0.8f, 0.8f, 0.8f));
+		g.setColor(PANEL_BORDER);
 		g.fillRect(bounds.x - 15, bounds.y - 15, bounds.width + 15, bounds.height + 15);
 		g.setColor(Color.BLACK);
 		g.fillRect(bounds.x - 11, bounds.y - 11, bounds.width + 7, bounds.height + 7);
@@ -200,6 +259,113 @@ public class MainMenuLoop extends GameEngine implements ActionListener
 		return gameLoop;
 	}
 	
+	/**
+	**	Rebuilds the saved game's grid on the image loader's threads, then carries on playing it. If it can't be loaded, the
+	**		player is told and the save is thrown away.
+	**	@return False if the saved game couldn't be started, or the player stopped waiting.
+	**/
+	private boolean resumeGame()
+	{
+		File file = SavedGame.getDefaultFile();
+		final int width = super.screen.getWidth();
+		final int height = super.screen.getHeight();
+		final SavedGame saved;
+		TileGrid grid;
+		try
+		{
+			saved = SavedGame.load(file);
+			Future<TileGrid> rebuilt = super.imageLoader.submit(new Callable<TileGrid>()
+			{
+				public TileGrid call() throws IOException
+				{
+					return saved.createGrid(new AtlasCache(), width, height);
+				}
+			});
+			grid = LoadingDialog.show(super.screen.getGameWindow(), "Loading the saved puzzle...", rebuilt);
+		}
+		catch (IOException ioe)
+		{
+			resumeFailed(file, ioe);
+			return false;
+		}
+		catch (ExecutionException ee)
+		{
+			resumeFailed(file, ee.getCause());
+			return false;
+		}
+		if (grid == null)
+			return false;
+		super.screen.enableAWTPaint(false);
+		disablePanel();
+		super.setCurrentLoop(SlidyPuzzleLoop.resume(saved, grid, width, height, super.screen.getGameWindow(), super.inputManager, super.screen, super.imageLoader));
+		inGame = true;
+		checkInGameTimer = 800;
+		return true;
+	}
+	
+	/**
+	**	Tells the player the saved game couldn't be loaded, and throws it away.
+	**/
+	private void resumeFailed(File file, Throwable cause)
+	{
+		JOptionPane.showMessageDialog(super.screen.getGameWindow(), "The saved puzzle couldn't be loaded. " + cause.getMessage(), "Resume Failed", JOptionPane.ERROR_MESSAGE);
+		file.delete();
+	}
+	
+	/**
+	**	Waits for a picture to play with to be decoded, showing a progress bar if it takes a while.
+	**	@param description The picture's file path or URL, so the game can be saved.
+	**	@return The picture, or null if it couldn't be loaded or the player stopped waiting.
+	**/
+	private ImageIcon loadPicture(Future<BufferedImage> image, String description)
+	{
+		try
+		{
+			BufferedImage loaded = LoadingDialog.show(super.screen.getGameWindow(), "Loading the picture...", image);
+			return (loaded == null) ? null : new ImageIcon(loaded, description);
+		}
+		catch (ExecutionException ee)
+		{
+			JOptionPane.showMessageDialog(super.screen.getGameWindow(), "The picture couldn't be loaded. " + ee.getCause().getMessage(), "Loading Failed", JOptionPane.ERROR_MESSAGE);
+			return null;
+		}
+	}
+	
+	/**
+	**	Cuts the picture into a shuffled grid on the image loader's threads, then starts playing it.
+	**	@return False if the player stopped waiting, and the game didn't start.
+	**/
+	private boolean startGame(final ImageIcon picture, final int columns, final int rows)
+	{
+		final int width = super.screen.getWidth();
+		final int height = super.screen.getHeight();
+		Future<TileGrid> grid = super.imageLoader.submit(new Callable<TileGrid>()
+		{
+			public TileGrid call()
+			{
+				return new TileGrid(columns, rows, picture, width, height, TileGrid.ShuffleMode.UNIFORM);
+			}
+		});
+		TileGrid cut;
+		try
+		{
+			cut = LoadingDialog.show(super.screen.getGameWindow(), "Cutting the picture into tiles...", grid);
+		}
+		catch (ExecutionException ee)
+		{
+			JOptionPane.showMessageDialog(super.screen.getGameWindow(), "The puzzle couldn't be made. " + ee.getCause().getMessage(), "Loading Failed", JOptionPane.ERROR_MESSAGE);
+			return false;
+		}
+		if (cut == null)
+			return false;
+		super.screen.enableAWTPaint(false);
+		disablePanel();
+		super.setCurrentLoop(new SlidyPuzzleLoop(cut, picture.getDescription(), width, height, super.screen.getGameWindow(), super.inputManager, super.screen, super.imageLoader));
+		inGame = true;
+		checkInGameTimer = 800;
+		return true;
+	}
+	
 	public void actionPerformed(ActionEvent ae)
 	{
 		if (inGame)
@@ -211,31 +377,46 @@ public class MainMenuLoop extends GameEngine implements ActionListener
 		{
 			disablePanel();
 			super.screen.enableAWTPaint(true);
-			int retVal = GameTypeDialog.show(super.screen.getGameWindow());
+			if (SavedGame.getDefaultFile().exists())
+			{
+				int resume = JOptionPane.showConfirmDialog(super.screen.getGameWindow(), "Carry on with the puzzle you left last time?", "Resume Puzzle", JOptionPane.YES_NO_CANCEL_OPTION);
+				if (resume == JOptionPane.YES_OPTION && resumeGame())
+					return;
+				if (resume == JOptionPane.CANCEL_OPTION || resume == JOptionPane.CLOSED_OPTION)
+				{
+					super.screen.enableAWTPaint(false);
+					enablePanel();
+					return;
+				}
+			}
+			int retVal = GameTypeDialog.show(super.screen.getGameWindow(), super.imageLoader);
 			if (retVal == GameTypeDialog.PLAY_PRESET)
 			{
 				int imageIndex = GameTypeDialog.getSelectedPresetIndex();
-				ArrayList<Point> tileSuggestions = TileGrid.createSuggestions(this.getClass().getResource("StandardImage" + imageIndex + ".png"), super.screen.getWidth(), super.screen.getHeight());
-				String[] options = new String[tileSuggestions.size()];
-				for (int i = 0; i < options.length; ++i)
+				URL imagePath = this.getClass().getResource("StandardImage" + imageIndex + ".png");
+				ImageIcon picture = loadPicture(super.imageLoader.load(imagePath, LoadingDialog.getProgressListener()), imagePath.toExternalForm());
+				String s = null;
+				if (picture != null)
 				{
-					Point p = tileSuggestions.get(i);
-					options[i] = "" + p.x + " x " + p.y;
+					ArrayList<Point> tileSuggestions = TileGrid.createSuggestions(picture, super.screen.getWidth(), super.screen.getHeight());
+					String[] options = new String[tileSuggestions.size()];
+					for (int i = 0; i < options.length; ++i)
+					{
+						Point p = tileSuggestions.get(i);
+						options[i] = "" + p.x + " x " + p.y;
+					}
+					s = (String) JOptionPane.showInputDialog(super.screen.getGameWindow(), "Select the dimensions of the play area. Rows by Columns.", "Select Grid Size", JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
 				}
-				String s = (String) JOptionPane.showInputDialog(super.screen.getGameWindow(), "Select the dimensions of the play area. Rows by Columns.", "Select Grid Size", JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
-				super.screen.enableAWTPaint(false);
+				boolean started = false;
 				if (s != null)
 				{
 					Scanner reader = new Scanner(s);
 					int columns = reader.nextInt();
 					reader.next();
 					int rows = reader.nextInt();
-					disablePanel();
-					super.setCurrentLoop(new SlidyPuzzleLoop(this.getClass().getResource("StandardImage" + imageIndex + ".png"), columns, rows, super.screen.getWidth(), super.screen.getHeight(), super.screen.getGameWindow(), super.inputManager, super.screen));
-					inGame = true;
-					checkInGameTimer = 800;
+					started = startGame(picture, columns, rows);
 				}
-				else
+				if (! started)
 				{
 					super.screen.enableAWTPaint(false);
 					enablePanel();
@@ -244,10 +425,15 @@ public class MainMenuLoop extends GameEngine implements ActionListener
 			else if (retVal == GameTypeDialog.PLAY_CUSTOM)
 			{
 				retVal = jfc.showDialog(super.screen.getGameWindow(), "Select Image");
+				ImageIcon picture = null;
 				if (retVal == JFileChooser.APPROVE_OPTION)
 				{
 					File selectedFile = jfc.getSelectedFile();
-					ArrayList<Point> tileSuggestions = TileGrid.createSuggestions(selectedFile, super.screen.getWidth(), super.screen.getHeight());
+					picture = loadPicture(super.imageLoader.load(selectedFile, LoadingDialog.getProgressListener()), selectedFile.getPath());
+				}
+				if (picture != null)
+				{
+					ArrayList<Point> tileSuggestions = TileGrid.createSuggestions(picture, super.screen.getWidth(), super.screen.getHeight());
 					if (tileSuggestions != null)
 					{
 						String[] options = new String[tileSuggestions.size()];
@@ -257,19 +443,16 @@ public class MainMenuLoop extends GameEngine implements ActionListener
 							options[i] = "" + p.x + " x " + p.y;
 						}
 						String s = (String) JOptionPane.showInputDialog(super.screen.getGameWindow(), "Select the dimensions of the play area. Rows by Columns.", "Select Grid Size", JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
-						super.screen.enableAWTPaint(false);
+						boolean started = false;
 						if (s != null)
 						{
 							Scanner reader = new Scanner(s);
 							int columns = reader.nextInt();
 							reader.next();
 							int rows = reader.nextInt();
-							disablePanel();
-							super.setCurrentLoop(new SlidyPuzzleLoop(selectedFile, columns, rows, super.screen.getWidth(), super.screen.getHeight(), super.screen.getGameWindow(), super.inputManager, super.screen));
-							inGame = true;
-							checkInGameTimer = 800;
+							started = startGame(picture, columns, rows);
 						}
-						else
+						if (! started)
 						{
 							super.screen.enableAWTPaint(false);
 							enablePanel();
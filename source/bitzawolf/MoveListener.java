@@ -0,0 +1,14 @@
+package bitzawolf;
+
+/**
+**	Gets told about every step the empty tile of a <code>TileGrid</code> takes after the grid has been shuffled,
+**		whether from the player, a hint, or undoing and redoing. Sliding a whole row counts as one step per tile.
+**/
+public interface MoveListener
+{
+	/**
+	**	Called once the board has changed.
+	**	@param direction The <code>Board</code> direction the empty tile stepped in.
+	**/
+	public void emptyMoved(int direction);
+}
\ No newline at end of file
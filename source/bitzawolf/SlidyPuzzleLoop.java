@@ -1,14 +1,25 @@
 package bitzawolf;
 
+import bitzawolf.replay.ReplayWriter;
+import bitzawolf.save.*;
+import bitzawolf.solver.*;
 import convcomm.engine.util.EmptyGameLoop;
+import convcomm.engine.util.GameLoop;
+import convcomm.engine.util.ImageLoader;
+import convcomm.engine.util.Interpolatable;
 import convcomm.engine.input.*;
 import convcomm.engine.graphics.ScreenManager;
 
 import java.awt.*;
 import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
 import java.awt.event.*;
 import java.io.*;
-import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import javax.swing.*;
 
 /**
@@ -16,11 +27,15 @@ import javax.swing.*;
 **		the other classes like Tile and TileGrid; this class manages the update loop, draw loop, the pressing
 **		of buttons, displaying a pause menu, quitting, etc.
 **/
-public class SlidyPuzzleLoop extends EmptyGameLoop implements MouseListener
+public class SlidyPuzzleLoop extends EmptyGameLoop implements MouseListener, Interpolatable
 {
 	private static final Color[] GRADIENT_COLORS = {Color.YELLOW, Color.BLACK};
 	private static final float[] DISTANCE = {0.0f, 1.0f};
 	private static final double FREQUENCY = Math.PI / 500.0; // complete half of a cycle in x milliseconds.
+	private static final int GRADIENT_STEPS = 120; // angles the backdrop is pre-rendered at
+	private static final int BACKDROP_SCALE = 8; // the backdrop changes about one shade per 8 pixels, so it's rendered 8 times smaller and stretched
+	private static final int MAX_HINT_TILES = 16; // boards bigger than 4 x 4 can take the solver far too long to wait on.
+	private static final long HINT_NODE_LIMIT = 10000000; // about a second of searching in the background before giving up.
 	
 	private boolean quit, waitForFinalTile, drawOriginalImage;
 	private boolean checkCompletion;
@@ -29,28 +44,85 @@ public class SlidyPuzzleLoop extends EmptyGameLoop implements MouseListener
 	private Component compy;
 	private int screenCenterX, screenCenterY, screenMax, screenWidth, screenHeight;
 	private double currentAngle;
-	private VirtualKey exit;
+	private LinearGradientPaint[] gradients; // drawn until the backdrops are ready
+	private BufferedImage[] backdrops;
+	private Future<BufferedImage[]> pendingBackdrops;
+	private VirtualKey exit, hint, undo, redo;
+	private Solver solver; // only used by the hint search, made by its first one
+	private ImageLoader loader;
+	private Future<int[]> pendingHint;
+	private Board hintBoard; // the board the pending hint is for
+	private String hintMessage; // what to tell the player about the last hint, once the update's done
+	private ReplayWriter replay;
+	private boolean replayStarted;
 	private ScreenManager screenManager;
+	private boolean dirtyRenderingOn;
+	private String imageId;
+	private long elapsedTime;
+	private boolean resumed;
+	private float alpha;
 	
-	public SlidyPuzzleLoop(URL imagePath, int numColumns, int numRows, int screenWidth, int screenHeight, Component compy, InputManager inputManager, ScreenManager sm)
+	/**
+	**	@param imageIco The picture, already loaded, with its file path or URL as its description so the game can be saved.
+	**/
+	public SlidyPuzzleLoop(ImageIcon imageIco, int numColumns, int numRows, int screenWidth, int screenHeight, Component compy, InputManager inputManager, ScreenManager sm, ImageLoader loader)
 	{
-		this(new ImageIcon(imagePath), numColumns, numRows, screenWidth, screenHeight, compy, inputManager, sm);
+		this(new TileGrid(numColumns, numRows, imageIco, screenWidth, screenHeight, TileGrid.ShuffleMode.UNIFORM), imageIco.getDescription(), screenWidth, screenHeight, compy, inputManager, sm, loader);
 	}
 	
-	public SlidyPuzzleLoop(File imageFile, int numColumns, int numRows, int screenWidth, int screenHeight, Component compy, InputManager inputManager, ScreenManager sm)
+	/**
+	**	Starts a new game with a grid that's already been made, like one cut up on an <code>ImageLoader</code>'s threads.
+	**	@param imageId The file path or URL of the grid's image, so the game can be saved.
+	**	@param loader Where hints are searched for, so the game never waits on one.
+	**/
+	public SlidyPuzzleLoop(TileGrid grid, String imageId, int screenWidth, int screenHeight, Component compy, InputManager inputManager, ScreenManager sm, ImageLoader loader)
 	{
-		this(new ImageIcon(imageFile.getPath()), numColumns, numRows, screenWidth, screenHeight, compy, inputManager, sm);
+		this(grid, imageId, 0, screenWidth, screenHeight, compy, inputManager, sm, loader);
 	}
 	
-	public SlidyPuzzleLoop(ImageIcon imageIco, int numColumns, int numRows, int screenWidth, int screenHeight, Component compy, InputManager inputManager, ScreenManager sm)
+	/**
+	**	Carries on with a saved game.
+	**	@param grid The saved game's grid, made with <code>SavedGame.createGrid</code> on an <code>ImageLoader</code>'s
+	**		threads.
+	**/
+	public static SlidyPuzzleLoop resume(SavedGame saved, TileGrid grid, int screenWidth, int screenHeight, Component compy, InputManager inputManager, ScreenManager sm, ImageLoader loader)
+	{
+		SlidyPuzzleLoop loop = new SlidyPuzzleLoop(grid, saved.getImageId(), saved.getElapsedTime(), screenWidth, screenHeight, compy, inputManager, sm, loader);
+		loop.resumed = true;
+		return loop;
+	}
+	
+	/**
+	**	Creates a puzzle with no window, keyboard or mouse, to be run by a <code>HeadlessRunner</code>. Tiles are moved
+	**		with <code>clickAt</code>, and the puzzle ends when it's been solved and clicked once more. Nothing is saved, and
+	**		hints are searched for on the game thread.
+	**/
+	public SlidyPuzzleLoop(TileGrid grid, int screenWidth, int screenHeight)
+	{
+		this(grid, null, 0, screenWidth, screenHeight, null, null, null, null);
+	}
+	
+	/**
+	**	@param imageId The file path or URL of the grid's image, so the game can be saved.
+	**	@param elapsedTime The milliseconds already played.
+	**	@param compy The component to listen to the mouse on. This, the input manager, the screen manager and the loader
+	**		are all null when running headless.
+	**/
+	private SlidyPuzzleLoop(TileGrid grid, String imageId, long elapsedTime, int screenWidth, int screenHeight, Component compy, InputManager inputManager, ScreenManager sm, ImageLoader loader)
 	{
 		quit = false;
 		waitForFinalTile = false;
 		drawOriginalImage = false;
 		checkCompletion = false;
 		this.compy = compy;
-		compy.addMouseListener(this);
-		grid = new TileGrid(numColumns, numRows, imageIco, screenWidth, screenHeight);
+		if (compy != null)
+			compy.addMouseListener(this);
+		this.grid = grid;
+		this.imageId = imageId;
+		this.elapsedTime = elapsedTime;
+		resumed = false;
+		replay = null;
+		replayStarted = false;
 		paddingLeft = 0;
 		paddingTop = 0;
 		if (grid.getScaledImageWidth() < screenWidth)
@@ -64,11 +136,30 @@ public class SlidyPuzzleLoop extends EmptyGameLoop implements MouseListener
 		screenCenterX = screenWidth / 2;
 		screenCenterY = screenHeight / 2;
 		currentAngle = 0;
+		alpha = 1.0f;
 		
 		exit = new VirtualKey("Exit", VirtualKey.Behavior.INITIAL_PRESS_ONLY);
-		inputManager.mapToKeyboard(exit, KeyEvent.VK_ESCAPE);
+		hint = new VirtualKey("Hint", VirtualKey.Behavior.INITIAL_PRESS_ONLY);
+		undo = new VirtualKey("Undo", VirtualKey.Behavior.INITIAL_PRESS_ONLY);
+		redo = new VirtualKey("Redo", VirtualKey.Behavior.INITIAL_PRESS_ONLY);
+		if (inputManager != null)
+		{
+			inputManager.mapToKeyboard(exit, KeyEvent.VK_ESCAPE);
+			inputManager.mapToKeyboard(hint, KeyEvent.VK_H);
+			inputManager.mapToKeyboard(undo, KeyEvent.VK_Z);
+			inputManager.mapToKeyboard(redo, KeyEvent.VK_Y);
+		}
+		solver = null;
+		this.loader = loader;
+		pendingHint = null;
+		hintBoard = null;
+		hintMessage = null;
+		gradients = null;
+		backdrops = null;
+		pendingBackdrops = null;
 		
 		screenManager = sm;
+		dirtyRenderingOn = false;
 	}
 	
 	@Override
@@ -76,24 +167,138 @@ public class SlidyPuzzleLoop extends EmptyGameLoop implements MouseListener
 	{
 		if (drawOriginalImage)
 		{
-			Point2D start = new Point2D.Float(screenCenterX, screenCenterY);
-			Point2D end = new Point2D.Float((float) Math.cos(currentAngle) * screenMax, (float) Math.sin(currentAngle) * screenMax);
-			LinearGradientPaint gradient = new LinearGradientPaint(start, end, DISTANCE, GRADIENT_COLORS, MultipleGradientPaint.CycleMethod.REFLECT);
-			g.setPaint(gradient);
-			g.fillRect(0, 0, screenWidth, screenHeight);
+			int step = (int) (currentAngle / (Math.PI * 2) * GRADIENT_STEPS) % GRADIENT_STEPS;
+			if (backdrops == null && loader == null)
+				backdrops = createBackdrops(); // headless, where a slow frame doesn't matter but the same frames every run do
+			if (backdrops != null)
+				g.drawImage(backdrops[step], 0, 0, screenWidth, screenHeight, null);
+			else
+			{
+				g.setPaint(gradients[step]);
+				g.fillRect(0, 0, screenWidth, screenHeight);
+			}
 			Image img = grid.getOriginalImageScaled();
 			g.drawImage(img, paddingLeft, paddingTop, null);
 		}
 		else
-			grid.draw(g, paddingLeft, paddingTop);
+			grid.draw(g, paddingLeft, paddingTop, alpha);
+	}
+	
+	/**
+	**	Tiles are drawn between updates, so any still sliding are marked dirty every frame, not just on updates.
+	**/
+	public void setInterpolation(float alpha)
+	{
+		this.alpha = alpha;
+		if (screenManager != null)
+			grid.markAnimating(screenManager.getDirtyRegions(), paddingLeft, paddingTop);
+	}
+	
+	/**
+	**	Starts rendering the backdrop behind the finished picture on the loader's threads, and makes the gradients to fill
+	**		it with until that's done, so the moment the puzzle's solved doesn't stutter. Headless, nothing's done until the
+	**		backdrop is first drawn, since usually nothing ever draws it.
+	**/
+	private void startBackdrops()
+	{
+		if (loader == null)
+			return;
+		gradients = new LinearGradientPaint[GRADIENT_STEPS];
+		Point2D start = new Point2D.Float(screenCenterX, screenCenterY);
+		for (int i = 0; i < GRADIENT_STEPS; ++i)
+		{
+			double angle = Math.PI * 2 * i / GRADIENT_STEPS;
+			Point2D end = new Point2D.Float((float) Math.cos(angle) * screenMax, (float) Math.sin(angle) * screenMax);
+			gradients[i] = new LinearGradientPaint(start, end, DISTANCE, GRADIENT_COLORS, MultipleGradientPaint.CycleMethod.REFLECT);
+		}
+		pendingBackdrops = loader.submit(new Callable<BufferedImage[]>()
+		{
+			public BufferedImage[] call()
+			{
+				return createBackdrops();
+			}
+		});
+	}
+	
+	/**
+	**	Renders the rotating backdrop of the finished picture once at every angle it's drawn at, so each frame of the
+	**		celebration is one stretched copy instead of a full-screen gradient fill. The backdrop only ever holds the 256
+	**		shades between its two colors, so the frames are 8-bit indexed images at an eighth of the screen's size, about
+	**		4 MB for all of them on a 1920 x 1080 screen.
+	**/
+	private BufferedImage[] createBackdrops()
+	{
+		byte[] red = new byte[256], green = new byte[256], blue = new byte[256];
+		for (int i = 0; i < 256; ++i)
+		{
+			red[i] = (byte) (GRADIENT_COLORS[0].getRed() + (GRADIENT_COLORS[1].getRed() - GRADIENT_COLORS[0].getRed()) * i / 255);
+			green[i] = (byte) (GRADIENT_COLORS[0].getGreen() + (GRADIENT_COLORS[1].getGreen() - GRADIENT_COLORS[0].getGreen()) * i / 255);
+			blue[i] = (byte) (GRADIENT_COLORS[0].getBlue() + (GRADIENT_COLORS[1].getBlue() - GRADIENT_COLORS[0].getBlue()) * i / 255);
+		}
+		IndexColorModel palette = new IndexColorModel(8, 256, red, green, blue);
+		int width = (screenWidth + BACKDROP_SCALE - 1) / BACKDROP_SCALE;
+		int height = (screenHeight + BACKDROP_SCALE - 1) / BACKDROP_SCALE;
+		float scale = 1.0f / BACKDROP_SCALE;
+		Point2D start = new Point2D.Float(screenCenterX * scale, screenCenterY * scale);
+		BufferedImage[] backdrops = new BufferedImage[GRADIENT_STEPS];
+		for (int i = 0; i < GRADIENT_STEPS; ++i)
+		{
+			double angle = Math.PI * 2 * i / GRADIENT_STEPS;
+			Point2D end = new Point2D.Float((float) Math.cos(angle) * screenMax * scale, (float) Math.sin(angle) * screenMax * scale);
+			backdrops[i] = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, palette);
+			Graphics2D g = backdrops[i].createGraphics();
+			g.setPaint(new LinearGradientPaint(start, end, DISTANCE, GRADIENT_COLORS, MultipleGradientPaint.CycleMethod.REFLECT));
+			g.fillRect(0, 0, width, height);
+			g.dispose();
+		}
+		return backdrops;
+	}
+	
+	/**
+	**	Swaps the rendered backdrops in once they're ready. If rendering them failed, the gradients carry on instead.
+	**/
+	private void finishBackdrops()
+	{
+		try
+		{
+			backdrops = pendingBackdrops.get();
+		}
+		catch (InterruptedException ie)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException ee)
+		{
+			System.out.println("Couldn't render the backdrop: " + ee.getCause());
+		}
+		pendingBackdrops = null;
 	}
 	
 	@Override
 	public void globalUpdate(long time)
 	{
+		if (! dirtyRenderingOn && screenManager != null)
+		{
+			// tiles mark what they change, so still frames cost nothing to draw. Turned on here rather than when the loop is
+			// made, since it's made on the Swing event thread while the game thread is still drawing the menu.
+			screenManager.setDirtyRendering(true);
+			dirtyRenderingOn = true;
+		}
 		synchronized (this)
 		{
-			grid.update(time);
+			if (! replayStarted)
+			{
+				// opened here rather than when the loop is made, which happens on the Swing event thread
+				replay = ReplayWriter.create(grid.getBoard(), imageId);
+				if (replay != null)
+					grid.addMoveListener(replay);
+				replayStarted = true;
+			}
+			grid.update(time, (screenManager == null) ? null : screenManager.getDirtyRegions(), paddingLeft, paddingTop);
+			if (pendingHint != null && pendingHint.isDone() && grid.isNotMoving())
+				finishHint();
+			if (pendingBackdrops != null && pendingBackdrops.isDone())
+				finishBackdrops();
 			if (checkCompletion)
 			{
 				checkCompletion = false;
@@ -106,22 +311,154 @@ public class SlidyPuzzleLoop extends EmptyGameLoop implements MouseListener
 				{
 					drawOriginalImage = true;
 					waitForFinalTile = false;
+					startBackdrops();
+					if (resumed)
+						SavedGame.getDefaultFile().delete(); // it's finished now
 				}
 			}
 			else if (exit.isPressed())
+			{
+				if (screenManager == null)
+					quit = true; // nobody to ask when headless
+				else
+				{
+					screenManager.enableAWTPaint(true);
+					int retVal = JOptionPane.showConfirmDialog(null, "Stop playing this puzzle? It'll be saved so you can carry on from Play.", "Quit Puzzle", JOptionPane.YES_NO_OPTION);
+					if (retVal == JOptionPane.YES_OPTION)
+					{
+						saveGame();
+						quit = true;
+					}
+					screenManager.enableAWTPaint(false);
+				}
+			}
+			else if (hint.isPressed() && grid.isNotMoving())
+				showHint();
+			else if (undo.isPressed() && grid.isNotMoving())
+				checkCompletion = grid.undoMove();
+			else if (redo.isPressed() && grid.isNotMoving())
+				checkCompletion = grid.redoMove();
+		}
+		if (replay != null)
+			replay.flush(); // here on the game thread, since moves made with the mouse are recorded on the Swing event thread
+		if (hintMessage != null)
+		{
+			if (screenManager != null)
 			{
 				screenManager.enableAWTPaint(true);
-				int retVal = JOptionPane.showConfirmDialog(null, "Stop playing this puzzle?", "Quit Puzzle", JOptionPane.YES_NO_OPTION);
-				if (retVal == JOptionPane.YES_OPTION)
-					quit = true;
+				JOptionPane.showMessageDialog(null, hintMessage, "Hint", JOptionPane.INFORMATION_MESSAGE);
 				screenManager.enableAWTPaint(false);
 			}
+			hintMessage = null;
 		}
+		if (! drawOriginalImage && ! waitForFinalTile)
+			elapsedTime += time;
 		if (drawOriginalImage)
 		{
 			currentAngle += FREQUENCY * time;
 			if (currentAngle >= Math.PI * 2)
 				currentAngle -= (Math.PI * 2);
+			if (screenManager != null)
+				screenManager.getDirtyRegions().addAll(); // the gradient behind the picture changes everywhere
+		}
+	}
+	
+	/**
+	**	Saves the puzzle to <code>SavedGame.getDefaultFile()</code>, replacing whatever was saved before, and caches the
+	**		scaled image so resuming doesn't have to scale it again.
+	**/
+	private void saveGame()
+	{
+		try
+		{
+			AtlasCache cache = new AtlasCache();
+			long atlasHash = AtlasCache.hash(grid.getOriginalImageScaled());
+			cache.store(grid.getOriginalImageScaled(), atlasHash);
+			cache.removeAllExcept(atlasHash); // there's only ever one saved game to resume
+			new SavedGame(imageId, grid.getBoard(), grid.getMoveLog(), elapsedTime, screenWidth, screenHeight, atlasHash).save(SavedGame.getDefaultFile());
+		}
+		catch (IOException ioe)
+		{
+			JOptionPane.showMessageDialog(null, "The puzzle couldn't be saved: " + ioe.getMessage(), "Save Failed", JOptionPane.ERROR_MESSAGE);
+		}
+	}
+	
+	/**
+	**	Starts searching for the next tile of the shortest solution from the current board, on the loader's threads so the
+	**		game carries on while it thinks. Only done for small boards, where the solver answers quickly, or for boards that
+	**		have pattern databases saved. Pressing for another hint while one is being searched for does nothing.
+	**/
+	private void showHint()
+	{
+		if (pendingHint != null)
+			return;
+		final Board board = grid.getBoard();
+		Callable<int[]> search = new Callable<int[]>()
+		{
+			public int[] call()
+			{
+				if (solver == null)
+				{
+					Heuristic heuristic = PatternDatabaseHeuristic.find(board.getColumns(), board.getRows());
+					if (heuristic == null)
+					{
+						if (board.getSize() > MAX_HINT_TILES)
+							return null; // the solver stays null, so the player's told the board's too big
+						heuristic = new ManhattanHeuristic(board.getColumns(), board.getRows());
+					}
+					Solver hintSolver = new Solver(board.getColumns(), board.getRows(), heuristic);
+					hintSolver.setNodeLimit(HINT_NODE_LIMIT);
+					solver = hintSolver;
+				}
+				return solver.solve(board);
+			}
+		};
+		hintBoard = board;
+		if (loader == null)
+		{
+			FutureTask<int[]> task = new FutureTask<int[]>(search);
+			task.run();
+			pendingHint = task;
+		}
+		else
+			pendingHint = loader.submit(search);
+	}
+	
+	/**
+	**	Slides the tile the finished hint search found, unless the board has changed since it started, or tells the player
+	**		why there isn't one.
+	**/
+	private void finishHint()
+	{
+		int[] solution;
+		try
+		{
+			solution = pendingHint.get();
+		}
+		catch (InterruptedException ie)
+		{
+			Thread.currentThread().interrupt();
+			solution = null;
+		}
+		catch (ExecutionException ee)
+		{
+			System.out.println("The hint search failed: " + ee.getCause());
+			solution = null;
+		}
+		pendingHint = null;
+		Board board = hintBoard;
+		hintBoard = null;
+		if (drawOriginalImage || waitForFinalTile || ! board.equals(grid.getBoard()))
+			return; // tiles were moved while it searched, so the hint's for a board that's gone
+		if (solver == null)
+			hintMessage = "Hints are only given for boards of up to " + MAX_HINT_TILES + " tiles.";
+		else if (solution == null)
+			hintMessage = "No hint could be found in time for this position. Try a few more moves first.";
+		else if (solution.length > 0)
+		{
+			int slot = board.getNeighbor(board.getBlankSlot(), solution[0]);
+			grid.moveTileViaSlot(slot % board.getColumns(), slot / board.getColumns());
+			checkCompletion = true;
 		}
 	}
 	
@@ -131,7 +468,73 @@ public class SlidyPuzzleLoop extends EmptyGameLoop implements MouseListener
 		return ! quit;
 	}
 	
+	/**
+	**	Called once the puzzle is over, finishes the replay if one is being recorded.
+	**/
+	@Override
+	public GameLoop nextLoop()
+	{
+		if (replay != null)
+		{
+			try
+			{
+				replay.close();
+			}
+			catch (IOException ioe)
+			{
+				System.out.println("Couldn't finish replay " + replay.getFile() + ": " + ioe.getMessage());
+			}
+			replay = null;
+		}
+		return null;
+	}
+	
+	public TileGrid getTileGrid()
+	{
+		return grid;
+	}
+	
+	/**
+	**	Returns true once the puzzle's been solved and the last tile has stopped, when the whole picture is shown.
+	**/
+	public boolean isSolved()
+	{
+		return drawOriginalImage;
+	}
+	
+	/**
+	**	Returns the keys the puzzle reacts to, so they can be tapped when there's no keyboard.
+	**/
+	public VirtualKey getExitKey()
+	{
+		return exit;
+	}
+	
+	public VirtualKey getHintKey()
+	{
+		return hint;
+	}
+	
+	public VirtualKey getUndoKey()
+	{
+		return undo;
+	}
+	
+	public VirtualKey getRedoKey()
+	{
+		return redo;
+	}
+	
 	public void mousePressed(MouseEvent me)
+	{
+		clickAt(me.getX(), me.getY());
+	}
+	
+	/**
+	**	Does what a click at the given screen position does: slides tiles towards the empty one, or ends the puzzle once
+	**		it's solved.
+	**/
+	public void clickAt(int x, int y)
 	{
 		synchronized (this)
 		{
@@ -143,7 +546,7 @@ public class SlidyPuzzleLoop extends EmptyGameLoop implements MouseListener
 			if (waitForFinalTile || drawOriginalImage)
 				return;
 			
-			grid.moveTile(me.getX() - paddingLeft, me.getY() - paddingTop);
+			grid.moveTile(x - paddingLeft, y - paddingTop);
 			checkCompletion = true;
 		}
 	}
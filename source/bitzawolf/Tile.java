@@ -1,25 +1,48 @@
 package bitzawolf;
 
+import convcomm.engine.graphics.DirtyRegions;
+
 import java.awt.geom.Point2D;
 import java.awt.*;
 
 /**
 **	Tile represents a single part of the entire puzzle. It is a portion of the image and can be slid around.
+**		Tiles normally share one atlas image and each draws its own rectangle of it, so a grid holds a single image no
+**		matter how many tiles it has.
 **/
 public class Tile
 {
 	private Image img;
+	private int sourceX, sourceY, width, height; // the part of img to draw, width is -1 to draw all of it
 	private Point originalSlotNumber, currentSlotNumber;
-	private Point2D.Float position, moveLocation, velocity;
+	private Point2D.Float position, previousPosition, moveLocation, velocity; // previousPosition is where the last update started
 	
 	private static final float ANIM_SPEED = 500.0f / 1000.0f; //x pixels per second convered into milliseconds.
 	
+	/**
+	**	Creates a tile that draws the whole image.
+	**/
 	public Tile(Image image, int slotNumberX, int slotNumberY, float posX, float posY)
 	{
-		img = image;
+		this(image, -1, -1, -1, -1, slotNumberX, slotNumberY, posX, posY);
+	}
+	
+	/**
+	**	Creates a tile that draws one rectangle of a shared atlas image.
+	**	@param sourceX The left edge of the tile's rectangle in the atlas.
+	**	@param sourceY The top edge of the tile's rectangle in the atlas.
+	**/
+	public Tile(Image atlas, int sourceX, int sourceY, int width, int height, int slotNumberX, int slotNumberY, float posX, float posY)
+	{
+		img = atlas;
+		this.sourceX = sourceX;
+		this.sourceY = sourceY;
+		this.width = width;
+		this.height = height;
 		originalSlotNumber = new Point(slotNumberX, slotNumberY);
 		currentSlotNumber = new Point(slotNumberX, slotNumberY);
 		position = new Point2D.Float(posX, posY);
+		previousPosition = new Point2D.Float(posX, posY);
 		moveLocation = new Point2D.Float(posX, posY);
 		velocity = new Point2D.Float(0, 0);
 	}
@@ -37,14 +60,32 @@ public class Tile
 		return (velocity.x != 0 || velocity.y != 0);
 	}
 	
+	/**
+	**	If the tile is moving or was still moving as of the last update, so drawing it between its previous and current
+	**		positions puts it in different places.
+	**/
+	public boolean isAnimating()
+	{
+		return isMoving() || position.x != previousPosition.x || position.y != previousPosition.y;
+	}
+	
 	/**
 	**	Moves this tile to the destination position and gives the tile a new slot number.
-	**		The tile automatically animates itself with the update call. 
+	**		The tile automatically animates itself with the update call.
 	**/
 	public void moveTo(float x, float y, Point newSlot)
 	{
-		currentSlotNumber.x = newSlot.x;
-		currentSlotNumber.y = newSlot.y;
+		moveTo(x, y, newSlot.x, newSlot.y);
+	}
+	
+	/**
+	**	Moves this tile to the destination position and gives the tile a new slot number.
+	**		The tile automatically animates itself with the update call.
+	**/
+	public void moveTo(float x, float y, int newSlotX, int newSlotY)
+	{
+		currentSlotNumber.x = newSlotX;
+		currentSlotNumber.y = newSlotY;
 		moveLocation.x = x;
 		moveLocation.y = y;
 		
@@ -67,12 +108,22 @@ public class Tile
 	**/
 	public void moveInstantlyTo(float x, float y, Point newSlot)
 	{
-		currentSlotNumber.x = newSlot.x;
-		currentSlotNumber.y = newSlot.y;
+		moveInstantlyTo(x, y, newSlot.x, newSlot.y);
+	}
+	
+	/**
+	**	Moves this tile to the destination position without animating and gives the tile a new slot number.
+	**/
+	public void moveInstantlyTo(float x, float y, int newSlotX, int newSlotY)
+	{
+		currentSlotNumber.x = newSlotX;
+		currentSlotNumber.y = newSlotY;
 		moveLocation.x = x;
 		moveLocation.y = y;
 		position.x = x;
 		position.y = y;
+		previousPosition.x = x;
+		previousPosition.y = y;
 	}
 	
 	/**
@@ -80,6 +131,24 @@ public class Tile
 	**/
 	public void update(long time)
 	{
+		update(time, null, 0, 0);
+	}
+	
+	/**
+	**	Animates this tile, marking where it was and where it is now as dirty if it moved. The position it had before
+	**		is kept, so <code>draw</code> can put the tile anywhere between the two.
+	**	@param dirty The regions to mark, or null to not track them.
+	**	@param paddingLeft How far right of the screen's edge the tile's position is measured from, like in <code>draw</code>.
+	**	@param paddingTop How far down from the screen's edge the tile's position is measured from, like in <code>draw</code>.
+	**/
+	public void update(long time, DirtyRegions dirty, int paddingLeft, int paddingTop)
+	{
+		if (! isAnimating())
+			return;
+		if (dirty != null)
+			markDirty(dirty, paddingLeft, paddingTop);
+		previousPosition.x = position.x;
+		previousPosition.y = position.y;
 		if (velocity.x != 0 || velocity.y != 0)
 		{
 			position.x += velocity.x * time;
@@ -107,21 +176,72 @@ public class Tile
 				velocity.y = 0;
 			}
 		}
+		if (dirty != null)
+			markDirty(dirty, paddingLeft, paddingTop);
+	}
+	
+	/**
+	**	Marks every area this tile can be drawn in until the next update as dirty, from its previous position to its
+	**		current one.
+	**/
+	public void markDirty(DirtyRegions dirty, int paddingLeft, int paddingTop)
+	{
+		int w = (width < 0) ? img.getWidth(null) : width;
+		int h = (width < 0) ? img.getHeight(null) : height;
+		int x = (int) Math.min(position.x, previousPosition.x);
+		int y = (int) Math.min(position.y, previousPosition.y);
+		int spanX = (int) Math.ceil(Math.abs(position.x - previousPosition.x));
+		int spanY = (int) Math.ceil(Math.abs(position.y - previousPosition.y));
+		dirty.add(x + paddingLeft, y + paddingTop, w + spanX + 1, h + spanY + 1);
 	}
 	
 	public Point getCurrentSlot()
 	{
-		return new Point(currentSlotNumber.x, currentSlotNumber.y);
+		return getCurrentSlot(new Point());
+	}
+	
+	/**
+	**	Puts the tile's slot in <code>result</code> rather than making a new point.
+	**	@return <code>result</code>
+	**/
+	public Point getCurrentSlot(Point result)
+	{
+		result.setLocation(currentSlotNumber.x, currentSlotNumber.y);
+		return result;
 	}
 	
 	public Point getOriginalSlot()
 	{
-		return new Point(originalSlotNumber.x, originalSlotNumber.y);
+		return getOriginalSlot(new Point());
+	}
+	
+	/**
+	**	Puts the slot the tile belongs in in <code>result</code> rather than making a new point.
+	**	@return <code>result</code>
+	**/
+	public Point getOriginalSlot(Point result)
+	{
+		result.setLocation(originalSlotNumber.x, originalSlotNumber.y);
+		return result;
 	}
 	
 	public void draw(Graphics2D g, int paddingLeft, int paddingTop)
 	{
-		g.drawImage(img, ((int) position.x) + paddingLeft, ((int) position.y) + paddingTop, null);
+		draw(g, paddingLeft, paddingTop, 1.0f);
+	}
+	
+	/**
+	**	Draws the tile part way from where it was before the last update to where it is now.
+	**	@param alpha How far along, from 0 for the previous position to 1 for the current one.
+	**/
+	public void draw(Graphics2D g, int paddingLeft, int paddingTop, float alpha)
+	{
+		int x = ((int) (previousPosition.x + (position.x - previousPosition.x) * alpha)) + paddingLeft;
+		int y = ((int) (previousPosition.y + (position.y - previousPosition.y) * alpha)) + paddingTop;
+		if (width < 0)
+			g.drawImage(img, x, y, null);
+		else
+			g.drawImage(img, x, y, x + width, y + height, sourceX, sourceY, sourceX + width, sourceY + height, null);
 	}
 	
 	public String toString()
@@ -1,11 +1,14 @@
 package bitzawolf;
 
+import convcomm.engine.graphics.DirtyRegions;
+import convcomm.engine.graphics.ImageCache;
+import convcomm.engine.graphics.ImageScaler;
+
 import java.io.*;
 import java.util.*;
 import java.awt.*;
 import javax.swing.*;
 import java.awt.image.*;
-import java.net.URL;
 
 /**
 **	Represents the play-area of tiles that can be shifted around. This class also facilitates the procedure
@@ -16,33 +19,100 @@ public class TileGrid
 {
 	private static final int MIN_TILE_SIZE = 100; // in either width or height
 	private int tileWidth, tileHeight, columns, rows;
-	private Tile[] tiles;
-	private Image originalImageScaled;
+	private Board board;
+	private Tile[] tiles; // indexed by tile number, the board decides which slot each one is in.
+	private BufferedImage originalImageScaled;
 	private ArrayList<Point> reverseMoves;
+	private MoveLog moveLog;
+	private ArrayList<MoveListener> moveListeners;
+	private Random random;
+	
+	/**
+	**	The ways a new grid can be shuffled.
+	**/
+	public enum ShuffleMode
+	{
+		/**Slides tiles around at random, like a player would. The moves are kept so they can be played back by
+		**	<code>getReverseMoves</code>, but the board is only mixed up near where the empty tile wandered.**/
+		RANDOM_WALK,
+		/**Places the tiles directly in an arrangement picked uniformly at random from every solvable one, in O(n).
+		**	There are no reverse moves.**/
+		UNIFORM
+	}
 	
+	/**
+	**	Creates a grid shuffled with <code>ShuffleMode.RANDOM_WALK</code>.
+	**/
 	public TileGrid(int columns, int rows, ImageIcon originalImage, int screenWidth, int screenHeight)
+	{
+		this(columns, rows, originalImage, screenWidth, screenHeight, ShuffleMode.RANDOM_WALK);
+	}
+	
+	public TileGrid(int columns, int rows, ImageIcon originalImage, int screenWidth, int screenHeight, ShuffleMode shuffleMode)
+	{
+		this(columns, rows, originalImage, screenWidth, screenHeight, shuffleMode, new Random());
+	}
+	
+	/**
+	**	@param random Used for shuffling, so a seeded one gives the same puzzle every time.
+	**/
+	public TileGrid(int columns, int rows, ImageIcon originalImage, int screenWidth, int screenHeight, ShuffleMode shuffleMode, Random random)
+	{
+		this(columns, rows, createAtlas(scaleImage(originalImage, screenWidth, screenHeight)));
+		this.random = random;
+		shuffle(shuffleMode);
+	}
+	
+	/**
+	**	Creates a grid with the tiles already in the given arrangement, like when resuming a saved game.
+	**	@param permutation The tile in each slot, see <code>Board</code>.
+	**	@param moveLog The moves that led to the arrangement, so they can still be undone. It is copied.
+	**	@throws IllegalArgumentException if the permutation doesn't fit the grid.
+	**/
+	public TileGrid(int columns, int rows, ImageIcon originalImage, int screenWidth, int screenHeight, int[] permutation, MoveLog moveLog)
+	{
+		this(columns, rows, createAtlas(scaleImage(originalImage, screenWidth, screenHeight)));
+		arrange(permutation, moveLog);
+	}
+	
+	/**
+	**	Creates a grid from an image that's already been scaled to fit the screen, with the tiles in the given arrangement.
+	**		This skips loading and scaling the original image, so it's the quick way to resume a game.
+	**	@see #getOriginalImageScaled()
+	**/
+	public TileGrid(int columns, int rows, BufferedImage scaledImage, int[] permutation, MoveLog moveLog)
+	{
+		this(columns, rows, createAtlas(scaledImage));
+		arrange(permutation, moveLog);
+	}
+	
+	/**
+	**	Cuts the atlas into solved tiles.
+	**/
+	private TileGrid(int columns, int rows, BufferedImage atlas)
 	{
 		this.columns = columns;
 		this.rows = rows;
-		ImageIcon scaled = scaleImage(originalImage, screenWidth, screenHeight);
-		originalImageScaled = scaled.getImage();
+		originalImageScaled = atlas;
 		int numTiles = columns * rows;
-		tileWidth = scaled.getIconWidth() / columns;
-		tileHeight = scaled.getIconHeight() / rows;
+		tileWidth = atlas.getWidth() / columns;
+		tileHeight = atlas.getHeight() / rows;
 		tiles = new Tile[numTiles];
 		for (int row = 0; row < rows; ++row)
 		{
 			for (int column = 0; column < columns; ++column)
 			{
-				BufferedImage buff = new BufferedImage(tileWidth, tileHeight, BufferedImage.TYPE_INT_ARGB);
-				Graphics g = buff.getGraphics();
-				g.drawImage(scaled.getImage(), 0, 0, tileWidth - 1, tileHeight - 1, column * tileWidth, row * tileHeight, (column + 1) * tileWidth, (row + 1) * tileHeight, null);
-				tiles[column + row * columns] = new Tile(buff, column, row, column * tileWidth, row * tileHeight);
+				// Leave out the last column and row of pixels so there's a thin gap between tiles.
+				int x = column * tileWidth, y = row * tileHeight;
+				tiles[column + row * columns] = new Tile(originalImageScaled, x, y, tileWidth - 1, tileHeight - 1, column, row, x, y);
 			}
 		}
-		tiles[0] = null;
-		
-		shuffle();
+		tiles[Board.BLANK] = null;
+		board = new Board(columns, rows);
+		random = new Random();
+		reverseMoves = new ArrayList<Point>();
+		moveLog = new MoveLog();
+		moveListeners = new ArrayList<MoveListener>();
 		
 		/*System.out.println("\ttotalTiles: " + numTiles + "\n\ttileWidth: " + tileWidth + "\n\ttileHeight: " + tileHeight);
 		int i = 0;
@@ -61,38 +131,37 @@ public class TileGrid
 	**/
 	public void moveTileViaSlot(int slotPosX, int slotPosY)
 	{
-		if (slotPosX >= tileWidth * columns)
+		if (slotPosX < 0 || slotPosX >= columns)
 			return;
-		if (slotPosY >= tileHeight * rows)
+		if (slotPosY < 0 || slotPosY >= rows)
 			return;
-		Tile selectedTile = tiles[slotPosX + slotPosY * columns];
-		if (selectedTile == null)
+		if (board.getTile(slotPosX, slotPosY) == Board.BLANK)
 			return;
-		Point selectedTilePos = selectedTile.getCurrentSlot();
-		Point emptyTilePos = getEmptyPosition();
-		boolean inSameRow = (selectedTilePos.y == emptyTilePos.y);
-		boolean inSameColumn = (selectedTilePos.x == emptyTilePos.x);
+		int emptyX = board.getBlankColumn();
+		int emptyY = board.getBlankRow();
+		boolean inSameRow = (slotPosY == emptyY);
+		boolean inSameColumn = (slotPosX == emptyX);
 		if (inSameRow)
 		{
-			int dx = (emptyTilePos.x > selectedTilePos.x) ? -1 : 1;
-			int xSlotPos = emptyTilePos.x + dx;
-			while (xSlotPos != selectedTilePos.x)
+			int dx = (emptyX > slotPosX) ? -1 : 1;
+			int xSlotPos = emptyX + dx;
+			while (xSlotPos != slotPosX)
 			{
-				moveTileToEmpty(xSlotPos, selectedTilePos.y);
+				moveTileToEmpty(xSlotPos, slotPosY);
 				xSlotPos += dx;
 			}
-			moveTileToEmpty(selectedTilePos.x, selectedTilePos.y);
+			moveTileToEmpty(slotPosX, slotPosY);
 		}
 		else if (inSameColumn)
 		{
-			int dy = (emptyTilePos.y > selectedTilePos.y) ? -1 : 1;
-			int ySlotPos = emptyTilePos.y + dy;
-			while (ySlotPos != selectedTilePos.y)
+			int dy = (emptyY > slotPosY) ? -1 : 1;
+			int ySlotPos = emptyY + dy;
+			while (ySlotPos != slotPosY)
 			{
-				moveTileToEmpty(selectedTilePos.x, ySlotPos);
+				moveTileToEmpty(slotPosX, ySlotPos);
 				ySlotPos += dy;
 			}
-			moveTileToEmpty(selectedTilePos.x, selectedTilePos.y);
+			moveTileToEmpty(slotPosX, slotPosY);
 		}
 		
 		/*System.out.println("Move Tile Called.");
@@ -123,9 +192,9 @@ public class TileGrid
 	**/
 	public void moveTile(int tileSpacePosX, int tileSpacePosY)
 	{
-		if (tileSpacePosX >= tileWidth * columns)
-			return;
-		if (tileSpacePosY >= tileHeight * rows)
+		if (tileSpacePosX < 0 || tileSpacePosX >= tileWidth * columns)
+			return; // left of the grid too, which would otherwise divide towards column 0
+		if (tileSpacePosY < 0 || tileSpacePosY >= tileHeight * rows)
 			return;
 		int column = (tileSpacePosX / tileWidth);
 		int row = (tileSpacePosY / tileHeight);
@@ -168,43 +237,96 @@ public class TileGrid
 	}
 	
 	/**
-	**	Orders the tile at the selected slot position to move to the empty tile position.
+	**	Orders the tile at the selected slot position to move to the empty tile position. The slot must be next to the empty tile.
 	**/
 	private void moveTileToEmpty(int slotPosX, int slotPosY)
 	{
-		Point emptyTilePos = getEmptyPosition();
-		Tile selectedTile = getTileFromSlotPosition(slotPosX, slotPosY);
-		float posX = emptyTilePos.x * tileWidth;
-		float posY = emptyTilePos.y * tileHeight;
-		selectedTile.moveTo(posX, posY, emptyTilePos);
-		for (int i = 0; i < tiles.length; ++i)
-		{
-			if (tiles[i] == null)
-				tiles[i] = selectedTile;
-			else if (tiles[i] == selectedTile)
-				tiles[i] = null;
-		}
+		int emptyX = board.getBlankColumn();
+		int emptyY = board.getBlankRow();
+		int direction = board.getDirectionTo(slotPosX + slotPosY * columns);
+		moveLog.add(direction);
+		Tile selectedTile = tiles[board.moveTileToBlank(slotPosX + slotPosY * columns)];
+		selectedTile.moveTo(emptyX * tileWidth, emptyY * tileHeight, emptyX, emptyY);
+		fireEmptyMoved(direction);
 	}
 	
 	/**
-	** Orders the tile at the selected slot position to move <b>without animating</b> to the empty tile position.
+	** Orders the tile at the selected slot position to move <b>without animating</b> to the empty tile position. The slot must be
+	**	next to the empty tile.
 	**/
 	private void moveTileInstantlyToEmpty(int slotPosX, int slotPosY)
 	{
-		Point emptyTilePos = getEmptyPosition();
-		Tile selectedTile = getTileFromSlotPosition(slotPosX, slotPosY);
-		float posX = emptyTilePos.x * tileWidth;
-		float posY = emptyTilePos.y * tileHeight;
-		if (posX >= tileWidth * columns || posY >= tileHeight * rows)
-			System.out.println("Warning! Moving a tile outside game boundaries (" + slotPosX + ", " + slotPosY + ") to (" + posX + ", " + posY + ")");
-		selectedTile.moveInstantlyTo(posX, posY, emptyTilePos);
-		for (int i = 0; i < tiles.length; ++i)
-		{
-			if (tiles[i] == null)
-				tiles[i] = selectedTile;
-			else if (tiles[i] == selectedTile)
-				tiles[i] = null;
-		}
+		int emptyX = board.getBlankColumn();
+		int emptyY = board.getBlankRow();
+		if (slotPosX >= columns || slotPosY >= rows)
+			System.out.println("Warning! Moving a tile outside game boundaries (" + slotPosX + ", " + slotPosY + ") to (" + emptyX + ", " + emptyY + ")");
+		Tile selectedTile = tiles[board.moveTileToBlank(slotPosX + slotPosY * columns)];
+		selectedTile.moveInstantlyTo(emptyX * tileWidth, emptyY * tileHeight, emptyX, emptyY);
+	}
+	
+	/**
+	**	Takes back the last move made, animating the tile back to where it was.
+	**	@return False if there are no moves to undo.
+	**/
+	public boolean undoMove()
+	{
+		return stepEmpty(moveLog.undo());
+	}
+	
+	/**
+	**	Makes the last undone move again.
+	**	@return False if there are no undone moves.
+	**/
+	public boolean redoMove()
+	{
+		return stepEmpty(moveLog.redo());
+	}
+	
+	/**
+	**	Animates the tile next to the empty tile in the given direction into the empty tile, without logging the move.
+	**/
+	private boolean stepEmpty(int direction)
+	{
+		if (direction == -1)
+			return false;
+		int emptyX = board.getBlankColumn();
+		int emptyY = board.getBlankRow();
+		Tile selectedTile = tiles[board.moveBlank(direction)];
+		selectedTile.moveTo(emptyX * tileWidth, emptyY * tileHeight, emptyX, emptyY);
+		fireEmptyMoved(direction);
+		return true;
+	}
+	
+	public void addMoveListener(MoveListener listener)
+	{
+		moveListeners.add(listener);
+	}
+	
+	public void removeMoveListener(MoveListener listener)
+	{
+		moveListeners.remove(listener);
+	}
+	
+	private void fireEmptyMoved(int direction)
+	{
+		for (int i = 0; i < moveListeners.size(); ++i)
+			moveListeners.get(i).emptyMoved(direction);
+	}
+	
+	/**
+	**	Returns the number of moves made since the grid was shuffled, not counting undone ones.
+	**/
+	public int getMoveCount()
+	{
+		return moveLog.getPosition();
+	}
+	
+	/**
+	**	Returns a snapshot of the moves made since the grid was shuffled, one entry per tile moved.
+	**/
+	public MoveLog getMoveLog()
+	{
+		return moveLog.snapshot();
 	}
 	
 	public Tile getTileFromSlotPosition(int slotPosX, int slotPosY)
@@ -212,34 +334,57 @@ public class TileGrid
 		int index = slotPosX + slotPosY * columns;
 		if (index >= tiles.length)
 			return null;
-		return tiles[index];
+		return tiles[board.getTile(index)];
 	}
 	
 	/**
-	**	Returns the position of the empty tile, or null if it's not found for some very strange and impossible reason.
+	**	Returns the position of the empty tile.
 	**/
 	public Point getEmptyPosition()
 	{
-		for (int x = 0; x < columns; ++x)
-		{
-			for (int y = 0; y < rows; ++y)
-			{
-				int i = x + y * columns;
-				if (tiles[i] == null)
-					return new Point(x, y);
-			}
-		}
-		return null;
+		return getEmptyPosition(new Point());
+	}
+	
+	/**
+	**	Puts the position of the empty tile in <code>result</code> rather than making a new point.
+	**	@return <code>result</code>
+	**/
+	public Point getEmptyPosition(Point result)
+	{
+		result.setLocation(board.getBlankColumn(), board.getBlankRow());
+		return result;
+	}
+	
+	/**
+	**	Returns a copy of the board this grid is showing. Changing the copy does not affect the grid.
+	**/
+	public Board getBoard()
+	{
+		return new Board(board);
+	}
+	
+	/**
+	**	Returns the Zobrist hash of the board this grid is showing, see <code>Board.getHash</code>. It's kept up to date as
+	**		tiles move, so calling this is free.
+	**/
+	public long getBoardHash()
+	{
+		return board.getHash();
+	}
+	
+	public int getColumns()
+	{
+		return columns;
+	}
+	
+	public int getRows()
+	{
+		return rows;
 	}
 	
 	public boolean isComplete()
 	{
-		for (Tile t : tiles)
-		{
-			if (t != null && ! t.isInOriginalSlot())
-					return false;
-		}
-		return true;
+		return board.isSolved();
 	}
 	
 	public boolean isNotMoving()
@@ -252,7 +397,10 @@ public class TileGrid
 		return true;
 	}
 	
-	public Image getOriginalImageScaled()
+	/**
+	**	Returns the image scaled to fit the screen, which the tiles are cut from.
+	**/
+	public BufferedImage getOriginalImageScaled()
 	{
 		return originalImageScaled;
 	}
@@ -276,51 +424,58 @@ public class TileGrid
 	}
 	
 	/**
-	**	Scales the provided image to fit the screen size. This function preserves aspect ratio
-	**		and aims to scale by leaving the image as large as possible. A new image is created, so the
-	**		original remains unchanged.
-	**	<p>If the image is smaller than the screen, the image returned is the same as the one passed.</p>
+	**	Copies the scaled image into one that matches the screen's pixel format, which every tile then draws its part of. An
+	**		image in the screen's format can be kept in video memory and drawn without converting it first.
 	**/
-	private static ImageIcon scaleImage(ImageIcon img, int screenWidth, int screenHeight)
+	private static BufferedImage createAtlas(BufferedImage scaled)
 	{
-		ImageIcon img2 = img;
-		if (img.getIconWidth() > screenWidth)
+		int width = scaled.getWidth();
+		int height = scaled.getHeight();
+		BufferedImage atlas;
+		if (GraphicsEnvironment.isHeadless())
+			atlas = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		else
 		{
-			if (img.getIconHeight() > screenHeight)
-			{
-				// so, the image is bigger than the screen's width and height.
-				// Try scaling by width first.
-				img = new ImageIcon(img.getImage().getScaledInstance(screenWidth, -1, Image.SCALE_DEFAULT));
-				if (img.getIconHeight() > screenHeight) // is it still too tall?
-					img = new ImageIcon(img.getImage().getScaledInstance(-1, screenHeight, Image.SCALE_DEFAULT)); // scale by height instead.
-			}
-			else
-				img = new ImageIcon(img.getImage().getScaledInstance(screenWidth, -1, Image.SCALE_DEFAULT));
+			GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+			atlas = gc.createCompatibleImage(width, height, Transparency.OPAQUE);
 		}
-		else if (img.getIconHeight() > screenHeight)
-			img = new ImageIcon(img.getImage().getScaledInstance(-1, screenHeight, Image.SCALE_DEFAULT));
-		
-		return img;
+		Graphics g = atlas.getGraphics();
+		g.drawImage(scaled, 0, 0, null);
+		g.dispose();
+		return atlas;
 	}
 	
-	public static ArrayList<Point> createSuggestions(File f, int screenWidth, int screenHeight)
-	{
-		return createSuggestions(new ImageIcon(f.getPath()), screenWidth, screenHeight);
-	}
-	
-	public static ArrayList<Point> createSuggestions(URL path, int screenWidth, int screenHeight)
+	/**
+	**	Scales the picture to fit the screen, or takes it from the shared <code>ImageCache</code> if it's been scaled to
+	**		this size before. Pictures are cached under their description, the file path or URL they were loaded from, so
+	**		ones without a description are always scaled.
+	**/
+	private static BufferedImage scaleImage(ImageIcon picture, int screenWidth, int screenHeight)
 	{
-		return createSuggestions(new ImageIcon(path), screenWidth, screenHeight);
+		Dimension size = ImageScaler.fitSize(picture.getIconWidth(), picture.getIconHeight(), screenWidth, screenHeight);
+		String source = picture.getDescription();
+		if (source == null)
+			return ImageScaler.scale(picture.getImage(), size.width, size.height);
+		ImageCache cache = ImageCache.getShared();
+		BufferedImage scaled = cache.get(source, size.width, size.height);
+		if (scaled == null)
+		{
+			scaled = ImageScaler.scale(picture.getImage(), size.width, size.height);
+			if (scaled != picture.getImage()) // a picture that already fits is its own scaled image
+				cache.put(source, size.width, size.height, scaled);
+		}
+		return scaled;
 	}
 	
 	/**
-	**	Creates a list of suggested grid sizes based on the image size when it will be scaled to fit the screen.
+	**	Creates a list of suggested grid sizes based on the image size when it will be scaled to fit the screen. The
+	**		scaled size is only worked out, the image isn't scaled.
 	**/
 	public static ArrayList<Point> createSuggestions(ImageIcon ico, int screenWidth, int screenHeight)
 	{
-		ImageIcon temp = scaleImage(ico, screenWidth, screenHeight);
-		int width = temp.getIconWidth();
-		int height = temp.getIconHeight();
+		Dimension scaled = ImageScaler.fitSize(ico.getIconWidth(), ico.getIconHeight(), screenWidth, screenHeight);
+		int width = scaled.width;
+		int height = scaled.height;
 		
 		ArrayList<Integer> possibleColumns = new ArrayList<Integer>();
 		ArrayList<Integer> possibleRows = new ArrayList<Integer>();
@@ -360,25 +515,103 @@ public class TileGrid
 				t.update(time);
 	}
 	
+	/**
+	**	Animates the tiles, marking the screen area of each one that moves in <code>dirty</code>.
+	**/
+	public void update(long time, DirtyRegions dirty, int paddingLeft, int paddingTop)
+	{
+		for (Tile t : tiles)
+			if (t != null)
+				t.update(time, dirty, paddingLeft, paddingTop);
+	}
+	
+	/**
+	**	Marks the screen area of every tile still animating in <code>dirty</code>, for when the tiles are drawn again
+	**		without an update in between, see <code>Tile.draw</code>.
+	**/
+	public void markAnimating(DirtyRegions dirty, int paddingLeft, int paddingTop)
+	{
+		for (Tile t : tiles)
+			if (t != null && t.isAnimating())
+				t.markDirty(dirty, paddingLeft, paddingTop);
+	}
+	
 	public void draw(Graphics2D g, int paddingLeft, int paddingTop)
+	{
+		draw(g, paddingLeft, paddingTop, 1.0f);
+	}
+	
+	/**
+	**	Draws the tiles part way between where they were before the last update and where they are now.
+	**	@param alpha How far along, from 0 to 1.
+	**/
+	public void draw(Graphics2D g, int paddingLeft, int paddingTop, float alpha)
 	{
 		for (Tile t : tiles)
 			if (t != null)
-				t.draw(g, paddingLeft, paddingTop);
+				t.draw(g, paddingLeft, paddingTop, alpha);
 	}
 	
 	/**
-	**	Shuffles the tiles, preparing them for a new game. This is performed in such a way so to make sure it can be solved. This is
-	**		done moving tiles as though a player were clicking on them to move, which gaurentees that the puzzle can be solved.
+	**	Shuffles the tiles, preparing them for a new game, in such a way that the puzzle can always be solved.
+	**	<p>Package-private so the benchmarks can time it on its own.</p>
 	**/
-	private void shuffle()
+	void shuffle(ShuffleMode mode)
+	{
+		if (mode == ShuffleMode.UNIFORM)
+			shuffleUniform();
+		else
+			shuffleRandomWalk();
+	}
+	
+	/**
+	**	Puts the tiles straight into a uniformly random solvable arrangement, see <code>Board.randomize</code>. Every tile
+	**		is placed once, so this is O(n) no matter how big the grid is.
+	**/
+	private void shuffleUniform()
+	{
+		do
+			board.randomize(random);
+		while (board.isSolved());
+		placeTiles();
+		reverseMoves = new ArrayList<Point>();
+	}
+	
+	private void arrange(int[] permutation, MoveLog log)
+	{
+		board.setTiles(permutation);
+		if (! board.isSolvable())
+			throw new IllegalArgumentException("The arrangement can't be solved");
+		placeTiles();
+		moveLog = log.snapshot();
+	}
+	
+	/**
+	**	Moves every tile instantly to the slot the board has it in.
+	**/
+	private void placeTiles()
+	{
+		for (int slot = 0; slot < tiles.length; ++slot)
+		{
+			int tile = board.getTile(slot);
+			if (tile == Board.BLANK)
+				continue;
+			int column = slot % columns;
+			int row = slot / columns;
+			tiles[tile].moveInstantlyTo(column * tileWidth, row * tileHeight, column, row);
+		}
+	}
+	
+	/**
+	**	Shuffles by moving tiles as though a player were clicking on them to move, which gaurentees that the puzzle can be solved.
+	**/
+	private void shuffleRandomWalk()
 	{
-		Random r = new Random();
 		final int SHUFFLE_MOVES = 100;
 		Point lastEmptyPosition = getEmptyPosition(), currentEmptyPosition = getEmptyPosition();
 		ArrayList<Point> possibleMoves = new ArrayList<Point>();
 		boolean lastMovementVertical = true;
-		reverseMoves = new ArrayList<Point>();
+		reverseMoves = new ArrayList<Point>(SHUFFLE_MOVES + 1);
 		reverseMoves.add(new Point(0, 0));
 		for (int i = 0 ; i < SHUFFLE_MOVES; ++i)
 		{
@@ -403,8 +636,8 @@ public class TileGrid
 				lastMovementVertical = true;
 			}
 			
-			Point useMe = possibleMoves.get(r.nextInt(possibleMoves.size()));
-			reverseMoves.add(0, useMe);
+			Point useMe = possibleMoves.get(random.nextInt(possibleMoves.size()));
+			reverseMoves.add(useMe);
 			
 			if (useMe.x != currentEmptyPosition.x)
 			{
@@ -423,12 +656,13 @@ public class TileGrid
 			lastEmptyPosition = currentEmptyPosition;
 			currentEmptyPosition = useMe;
 		}
+		Collections.reverse(reverseMoves); // newest move first, so playing them in order undoes the shuffle
 	}
 	
 	/**
 	**	Shuffles the tiles, preparing them for a new game. This is performed in such a way so to make sure it can be solved. This is
 	**		done moving tiles as though a player were clicking on them to move, which gaurentees that the puzzle can be solved.
-	**	
+	**
 	**	This method is being removed for a more efficient version. This method thinks in a 1-step-at-a-time fashion by examing
 	**		where the next movement can come from, picking one of those at random, then picking randomly how far in that direction
 	**		to move. If the spot the empty was just at is chosen, this gets repeated.
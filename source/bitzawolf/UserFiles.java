@@ -0,0 +1,76 @@
+package bitzawolf;
+
+import java.io.*;
+import java.nio.file.*;
+
+/**
+**	Finds where the game keeps its own files, like saved games, and writes them safely. Files go in
+**		<code>.slidypuzzles</code> in the user's home directory, unless the <code>slidypuzzles.home</code> system property
+**		names another directory.
+**/
+public class UserFiles
+{
+	/**System property naming the directory the game keeps its files in.**/
+	public static final String DIRECTORY_PROPERTY = "slidypuzzles.home";
+	
+	/**
+	**	Returns the game's directory, creating it if needed.
+	**/
+	public static File getDirectory()
+	{
+		File dir = locateDirectory();
+		dir.mkdirs();
+		return dir;
+	}
+	
+	private static File locateDirectory()
+	{
+		String directory = System.getProperty(DIRECTORY_PROPERTY);
+		return (directory != null) ? new File(directory) : new File(System.getProperty("user.home"), ".slidypuzzles");
+	}
+	
+	/**
+	**	Returns a file in the game's directory, without creating the directory, so checking whether a file exists never
+	**		leaves one behind. <code>writeAtomically</code> creates it when the file's first written.
+	**/
+	public static File getFile(String name)
+	{
+		return new File(locateDirectory(), name);
+	}
+	
+	/**
+	**	Replaces a file's contents so that anyone reading it sees either the old contents or the new ones, never half of
+	**		each: the data goes to a temporary file next to it first, which is then moved over the original.
+	**/
+	public static void writeAtomically(File file, byte[] data) throws IOException
+	{
+		File directory = file.getAbsoluteFile().getParentFile();
+		directory.mkdirs();
+		File temp = File.createTempFile(file.getName(), ".tmp", directory);
+		try
+		{
+			FileOutputStream out = new FileOutputStream(temp);
+			try
+			{
+				out.write(data);
+				out.getFD().sync();
+			}
+			finally
+			{
+				out.close();
+			}
+			try
+			{
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException amnse)
+			{
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally
+		{
+			temp.delete(); // only still there if something went wrong
+		}
+	}
+}
\ No newline at end of file
@@ -1,15 +1,23 @@
 package bitzawolf.dialog;
 
+import bitzawolf.save.ThumbnailCache;
+import convcomm.engine.util.ImageLoader;
+
 import java.io.*;
 import javax.swing.*;
 import javax.swing.event.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.net.URL;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
 
 /**
 **	Displays a dialog to select one of the game-modes to play: Use one of the provided images, or a custom image
 **		on the computer.
+**	<p>The preset previews are loaded on an <code>ImageLoader</code>'s threads the first time each is shown, so the
+**		dialog opens straight away and switching presets never waits on a decode. They come from the shared
+**		<code>ThumbnailCache</code>, so only the first game ever run decodes the full presets for them.</p>
 **/
 public class GameTypeDialog implements ActionListener
 {
@@ -21,6 +29,7 @@ public class GameTypeDialog implements ActionListener
 	private static final String[] IMAGE_NAMES = {"Cry of a Nether", "Forest Evening", "Morning Mist", "Secret of the Squares"};
 	private static final int WIDTH = 450;
 	private static final int HEIGHT = 210;
+	private static final int PREVIEW_SIZE = 90;
 	
 	private static JDialog dialog;
 	private static JPanel panel;
@@ -29,8 +38,10 @@ public class GameTypeDialog implements ActionListener
 	private static JButton buttonPlay, buttonCancel;
 	private static int returnValue;
 	private static int selectedPresetIndex;
-	private static ImageIcon imagePresetPreview;
+	private static ImageIcon[] presetPreviews = new ImageIcon[IMAGE_NAMES.length];
+	private static boolean[] previewRequested = new boolean[IMAGE_NAMES.length];
 	private static JLabel jLabelPresetPreview;
+	private static ImageLoader loader;
 	
 	/**
 	**	This "method" does all of the initialization for the static class. Pretty fancy!
@@ -66,9 +77,8 @@ public class GameTypeDialog implements ActionListener
 		gbc.gridwidth = 2;
 		panel.add(comboBoxPresetImages, gbc);
 		
-		imagePresetPreview = new ImageIcon(listener.getClass().getResource("StandardImage0.png"));
-		imagePresetPreview = new ImageIcon(imagePresetPreview.getImage().getScaledInstance(90, -1, Image.SCALE_DEFAULT));
-		jLabelPresetPreview = new JLabel(imagePresetPreview);
+		jLabelPresetPreview = new JLabel();
+		jLabelPresetPreview.setPreferredSize(new Dimension(PREVIEW_SIZE, PREVIEW_SIZE)); // the largest a preview gets, so the layout doesn't jump when one arrives
 		gbc.gridx = 3;
 		gbc.gridwidth = 1;
 		gbc.gridheight = 2;
@@ -94,10 +104,13 @@ public class GameTypeDialog implements ActionListener
 	/**
 	** Shows this dialog and returns a selected Width and Height. This method forces the calling thread to
 	**	wait until the user selects "Okay" or "Cancel".
+	**	@param imageLoader Loads the preset previews.
 	**/
-	public static int show(Frame parent)
+	public static int show(Frame parent, ImageLoader imageLoader)
 	{
 		returnValue = CANCEL;
+		loader = imageLoader;
+		showPreview(selectedPresetIndex);
 		
 		dialog = new JDialog(parent, "Select Image", true);
 		dialog.setSize(WIDTH, HEIGHT);
@@ -130,9 +143,65 @@ public class GameTypeDialog implements ActionListener
 				break;
 			}
 		}
-		imagePresetPreview = new ImageIcon(listener.getClass().getResource("StandardImage" + selectedPresetIndex + ".png"));
-		imagePresetPreview = new ImageIcon(imagePresetPreview.getImage().getScaledInstance(90, -1, Image.SCALE_DEFAULT));
-		jLabelPresetPreview.setIcon(imagePresetPreview);
+		showPreview(selectedPresetIndex);
+	}
+	
+	/**
+	**	Shows a preset's preview, or starts loading it and shows it once it's ready if it's still the one selected.
+	**/
+	private static void showPreview(final int index)
+	{
+		jLabelPresetPreview.setIcon(presetPreviews[index]);
+		if (previewRequested[index])
+			return;
+		previewRequested[index] = true;
+		final URL imagePath = listener.getClass().getResource("StandardImage" + index + ".png");
+		loader.submit(new Callable<Void>()
+		{
+			public Void call()
+			{
+				final ImageIcon preview;
+				try
+				{
+					preview = new ImageIcon(ThumbnailCache.getShared().get(imagePath, PREVIEW_SIZE));
+				}
+				catch (IOException ioe)
+				{
+					previewFailed(index, ioe);
+					return null;
+				}
+				catch (RuntimeException re)
+				{
+					previewFailed(index, re);
+					return null;
+				}
+				SwingUtilities.invokeLater(new Runnable()
+				{
+					public void run()
+					{
+						presetPreviews[index] = preview;
+						if (selectedPresetIndex == index)
+							jLabelPresetPreview.setIcon(preview);
+					}
+				});
+				return null;
+			}
+		});
+	}
+	
+	/**
+	**	Reports a preset's preview that couldn't be made, and lets it be tried again the next time the preset's shown.
+	**/
+	private static void previewFailed(final int index, Exception e)
+	{
+		System.out.println("Couldn't make the preview of " + IMAGE_NAMES[index] + ": " + e);
+		SwingUtilities.invokeLater(new Runnable()
+		{
+			public void run()
+			{
+				previewRequested[index] = false;
+			}
+		});
 	}
 	
 	/**
@@ -1,45 +1,72 @@
 package bitzawolf.dialog;
 
+import bitzawolf.save.ThumbnailCache;
+import convcomm.engine.util.ImageLoader;
+
 import javax.swing.*;
 import java.beans.*;
 import java.awt.*;
-import java.io.File;
+import java.io.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 /**
 **	Displays a preview of an image inside a JFileChooser. Borrowed from the
 **		excellent <a href="http://docs.oracle.com/javase/tutorial/uiswing/components/filechooser.html">Java
 **		tutorial</a> on creating a custom JFileChooser.
+**	<p>Thumbnails are made on an <code>ImageLoader</code>'s threads, so picking a huge image doesn't freeze the chooser.
+**		Picking another file cancels the thumbnail still being made. Thumbnails are kept in the shared
+**		<code>ThumbnailCache</code>, so going back through a folder doesn't decode its pictures again.</p>
 **/
 public class ImagePreview extends JComponent implements PropertyChangeListener
 {
+	private static final int THUMBNAIL_SIZE = 90;
+	
 	ImageIcon thumbnail = null;
 	File file = null;
+	File requested = null; // the file a thumbnail was last asked for
+	ImageLoader loader;
+	Future<Void> pending = null;
 	
-    public ImagePreview(JFileChooser fc)
+    public ImagePreview(JFileChooser fc, ImageLoader loader)
 	{
         setPreferredSize(new Dimension(100, 50));
+        this.loader = loader;
         fc.addPropertyChangeListener(this);
     }
 
     public void loadImage()
 	{
+        if (pending != null)
+            pending.cancel(true);
+        pending = null;
+        requested = file;
         if (file == null)
 		{
             thumbnail = null;
             return;
         }
 
-        //Don't use createImageIcon (which is a wrapper for getResource)
-        //because the image we're trying to load is probably not one
-        //of this program's own resources.
-        ImageIcon tmpIcon = new ImageIcon(file.getPath());
-        if (tmpIcon != null)
+        final File toLoad = file;
+        pending = loader.submit(new Callable<Void>()
 		{
-            if (tmpIcon.getIconWidth() > 90)
-                thumbnail = new ImageIcon(tmpIcon.getImage().getScaledInstance(90, -1, Image.SCALE_DEFAULT));
-			else
-                thumbnail = tmpIcon;
-        }
+            public Void call() throws IOException
+			{
+                final ImageIcon icon = new ImageIcon(ThumbnailCache.getShared().get(toLoad, THUMBNAIL_SIZE));
+                SwingUtilities.invokeLater(new Runnable()
+				{
+                    public void run()
+					{
+                        if (toLoad.equals(file))
+						{
+                            thumbnail = icon;
+                            repaint();
+                        }
+                    }
+                });
+                return null;
+            }
+        });
     }
 
     public void propertyChange(PropertyChangeEvent e)
@@ -75,7 +102,7 @@ public class ImagePreview extends JComponent implements PropertyChangeListener
 
     protected void paintComponent(Graphics g)
 	{
-        if (thumbnail == null)
+        if (thumbnail == null && file != requested)
             loadImage();
         if (thumbnail != null)
 		{
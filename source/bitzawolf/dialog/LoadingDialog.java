@@ -0,0 +1,154 @@
+package bitzawolf.dialog;
+
+import convcomm.engine.util.ImageLoadListener;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.util.concurrent.*;
+
+/**
+**	Waits on a task running on another thread, like an <code>ImageLoader</code> decoding a big picture, with a progress
+**		bar and a Cancel button. The dialog is modal, so the window keeps painting and answering input while it waits, and
+**		it only appears if the task takes longer than <code>POPUP_DELAY</code> milliseconds.
+**	<p>This class is a static class: pass <code>getProgressListener()</code> to the load, then call
+**		<code>LoadingDialog.show(Frame parent, String message, Future future)</code> from the event thread.</p>
+**/
+public class LoadingDialog implements ActionListener, ImageLoadListener
+{
+	private static final LoadingDialog listener = new LoadingDialog();
+	private static final long POPUP_DELAY = 250;
+	private static final int POLL_INTERVAL = 50; // milliseconds between checks on whether the task is done
+	private static final int WIDTH = 320;
+	private static final int HEIGHT = 140;
+	
+	private static JDialog dialog;
+	private static JPanel panel;
+	private static JLabel messageLabel;
+	private static JProgressBar progressBar;
+	private static JButton cancelButton;
+	private static Timer poll;
+	private static Future<?> future;
+	
+	/**
+	**	This "method" does all of the initialization for the static class. Pretty fancy!
+	**/
+	static
+	{
+		panel = new JPanel(new GridBagLayout());
+		GridBagConstraints gbc = new GridBagConstraints();
+		gbc.insets = new Insets(5, 5, 5, 5);
+		gbc.gridx = 0;
+		gbc.gridy = 0;
+		gbc.fill = GridBagConstraints.HORIZONTAL;
+		
+		messageLabel = new JLabel();
+		panel.add(messageLabel, gbc);
+		
+		progressBar = new JProgressBar(0, 100);
+		gbc.gridy = 1;
+		panel.add(progressBar, gbc);
+		
+		cancelButton = new JButton("Cancel");
+		cancelButton.addActionListener(listener);
+		gbc.gridy = 2;
+		gbc.fill = GridBagConstraints.NONE;
+		panel.add(cancelButton, gbc);
+		
+		poll = new Timer(POLL_INTERVAL, listener);
+	}
+	
+	/**
+	**	Returns the listener that moves the progress bar. Until it's first told of any progress the bar just shows that
+	**		something is happening.
+	**/
+	public static ImageLoadListener getProgressListener()
+	{
+		return listener;
+	}
+	
+	/**
+	**	Waits for the task to finish, showing the dialog if it doesn't finish straight away. The calling thread waits
+	**		until the task is done or the player presses Cancel, which cancels the task.
+	**	@return What the task made, or null if it was cancelled.
+	**	@throws ExecutionException if the task failed.
+	**/
+	public static <T> T show(Frame parent, String message, Future<T> task) throws ExecutionException
+	{
+		try
+		{
+			return task.get(POPUP_DELAY, TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException te)
+		{
+		
+		}
+		catch (CancellationException ce)
+		{
+			return null;
+		}
+		catch (InterruptedException ie)
+		{
+			task.cancel(true);
+			return null;
+		}
+		
+		future = task;
+		messageLabel.setText(message);
+		progressBar.setIndeterminate(true);
+		progressBar.setValue(0);
+		dialog = new JDialog(parent, "Loading", true);
+		dialog.setSize(WIDTH, HEIGHT);
+		dialog.setResizable(false);
+		dialog.add(panel);
+		dialog.setLocationRelativeTo(parent);
+		poll.start();
+		dialog.setVisible(true);
+		poll.stop();
+		dialog.dispose();
+		future = null;
+		
+		if (! task.isDone())
+			task.cancel(true); // the dialog was closed from its title bar
+		try
+		{
+			return task.get();
+		}
+		catch (CancellationException ce)
+		{
+			return null;
+		}
+		catch (InterruptedException ie)
+		{
+			return null;
+		}
+	}
+	
+	/** Empty constructor. This is a static class, so except for the listeners, this should never be called. **/
+	private LoadingDialog() { }
+	
+	public void imageProgress(final float fraction)
+	{
+		SwingUtilities.invokeLater(new Runnable()
+		{
+			public void run()
+			{
+				progressBar.setIndeterminate(false);
+				progressBar.setValue((int) (fraction * 100));
+			}
+		});
+	}
+	
+	public void actionPerformed(ActionEvent ae)
+	{
+		if (future == null)
+			return;
+		if (ae.getSource() == cancelButton)
+		{
+			future.cancel(true);
+			dialog.setVisible(false);
+		}
+		else if (ae.getSource() == poll && future.isDone())
+			dialog.setVisible(false);
+	}
+}
\ No newline at end of file
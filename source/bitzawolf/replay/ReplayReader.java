@@ -0,0 +1,248 @@
+package bitzawolf.replay;
+
+import bitzawolf.Board;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+**	Reads a replay file written by <code>ReplayWriter</code>. The file is memory-mapped and steps are decoded one at a
+**		time as they're asked for, so a replay of any length can be played back or checked without loading it onto the heap.
+**
+**	<p>Call <code>next()</code> until it returns false, reading <code>getDirection()</code> and <code>getTime()</code>
+**		after each call, or call <code>validate()</code> to step through the whole replay at once.</p>
+**
+**	<p>Usage as a tool: <code>java -cp "Slidy Puzzles.jar" bitzawolf.replay.ReplayReader replay...</code> checks every
+**		replay given and prints what's in it.</p>
+**/
+public class ReplayReader
+{
+	private static final int HEADER_SIZE = 26; // the fixed part: magic, version, columns, rows, string length, start time
+	private static final int MAX_SIDE = 1024; // far more tiles than the game ever makes, so a damaged size can't exhaust memory
+	
+	private final File file;
+	private final MappedByteBuffer data;
+	private final int columns, rows;
+	private final String imageId;
+	private final long startTime;
+	private final int[] initialTiles;
+	private final int movesStart;
+	private int direction;
+	private long time;
+	private int moves;
+	
+	public static void main(String[] args)
+	{
+		if (args.length == 0)
+		{
+			System.out.println("Usage: ReplayReader replay...");
+			System.exit(1);
+		}
+		for (String arg : args)
+		{
+			try
+			{
+				ReplayReader reader = new ReplayReader(new File(arg));
+				Board end = reader.validate();
+				System.out.println(arg + ": " + reader.getColumns() + " x " + reader.getRows() + " of " + reader.getImageId() + ", "
+					+ reader.getMoveCount() + " moves over " + reader.getTime() + " ms, " + (end.isSolved() ? "solved" : "not solved"));
+			}
+			catch (IOException ioe)
+			{
+				System.out.println(arg + ": " + ioe.getMessage());
+			}
+		}
+	}
+	
+	/**
+	**	Maps the file and reads its header.
+	**	@throws IOException if the file can't be read or isn't a replay.
+	**/
+	public ReplayReader(File file) throws IOException
+	{
+		this.file = file;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		finally
+		{
+			raf.close(); // the mapping stays valid after the channel is closed
+		}
+		data.order(ByteOrder.BIG_ENDIAN);
+		try
+		{
+			if (data.remaining() < HEADER_SIZE || data.getInt() != ReplayWriter.MAGIC)
+				throw new IOException(file + " is not a replay");
+			int version = data.getInt();
+			if (version != ReplayWriter.VERSION)
+				throw new IOException(file + " has unsupported version " + version);
+			columns = data.getInt();
+			rows = data.getInt();
+			if (columns < 2 || rows < 2 || columns > MAX_SIDE || rows > MAX_SIDE)
+				throw new IOException(file + " has a bad board size " + columns + " x " + rows);
+			imageId = readUTF();
+			startTime = data.getLong();
+			if (columns * rows > data.remaining()) // every tile takes at least a byte
+				throw new IOException(file + " is truncated");
+			initialTiles = new int[columns * rows];
+			for (int slot = 0; slot < initialTiles.length; ++slot)
+				initialTiles[slot] = (int) readVarint();
+		}
+		catch (BufferUnderflowException bue)
+		{
+			throw new IOException(file + " is truncated");
+		}
+		movesStart = data.position();
+		rewind();
+	}
+	
+	public int getColumns()
+	{
+		return columns;
+	}
+	
+	public int getRows()
+	{
+		return rows;
+	}
+	
+	/**
+	**	Returns what the puzzle's picture was, or an empty string if the writer wasn't told.
+	**/
+	public String getImageId()
+	{
+		return imageId;
+	}
+	
+	/**
+	**	Returns when recording started, in milliseconds since 1970.
+	**/
+	public long getStartTime()
+	{
+		return startTime;
+	}
+	
+	/**
+	**	Returns the board as the game started.
+	**	@throws IOException if the tiles stored aren't a permutation.
+	**/
+	public Board getInitialBoard() throws IOException
+	{
+		try
+		{
+			return new Board(columns, rows, initialTiles);
+		}
+		catch (IllegalArgumentException iae)
+		{
+			throw new IOException(file + " has a bad starting board: " + iae.getMessage());
+		}
+	}
+	
+	/**
+	**	Goes back to before the first step.
+	**/
+	public void rewind()
+	{
+		data.position(movesStart);
+		direction = -1;
+		time = 0;
+		moves = 0;
+	}
+	
+	/**
+	**	Reads the next step.
+	**	@return False if there are no more steps.
+	**	@throws IOException if the file ends partway through a step.
+	**/
+	public boolean next() throws IOException
+	{
+		if (! data.hasRemaining())
+			return false;
+		long value;
+		try
+		{
+			value = readVarint();
+		}
+		catch (BufferUnderflowException bue)
+		{
+			throw new IOException(file + " is truncated after " + moves + " moves");
+		}
+		direction = (int) (value & 3);
+		time += value >>> 2;
+		++moves;
+		return true;
+	}
+	
+	/**
+	**	Returns the <code>Board</code> direction the empty tile stepped in, as of the last call to <code>next()</code>.
+	**/
+	public int getDirection()
+	{
+		return direction;
+	}
+	
+	/**
+	**	Returns the milliseconds from the start of recording to the step last read.
+	**/
+	public long getTime()
+	{
+		return time;
+	}
+	
+	/**
+	**	Returns the number of steps read so far.
+	**/
+	public int getMoveCount()
+	{
+		return moves;
+	}
+	
+	/**
+	**	Plays every step from the start on the initial board, checking each one is a legal move.
+	**	@return The board as the replay ends.
+	**	@throws IOException if the replay is damaged or holds a move the board doesn't allow.
+	**/
+	public Board validate() throws IOException
+	{
+		Board board = getInitialBoard();
+		rewind();
+		while (next())
+		{
+			if (board.moveBlank(direction) == -1)
+				throw new IOException(file + " has an illegal move at step " + moves);
+		}
+		return board;
+	}
+	
+	private long readVarint() throws IOException
+	{
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7)
+		{
+			int b = data.get();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException(file + " has a bad number at byte " + data.position());
+	}
+	
+	/**
+	**	Reads a string written by <code>DataOutputStream.writeUTF</code>.
+	**/
+	private String readUTF() throws IOException
+	{
+		int length = data.getShort() & 0xFFFF;
+		byte[] bytes = new byte[length + 2];
+		bytes[0] = (byte) (length >>> 8);
+		bytes[1] = (byte) length;
+		data.get(bytes, 2, length);
+		return new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+	}
+}
\ No newline at end of file
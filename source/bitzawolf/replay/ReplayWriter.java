@@ -0,0 +1,184 @@
+package bitzawolf.replay;
+
+import bitzawolf.Board;
+import bitzawolf.MoveListener;
+
+import java.io.*;
+
+/**
+**	Records a game to a replay file as it's played. Add the writer to a <code>TileGrid</code> as a
+**		<code>MoveListener</code> right after the grid is made, and close it when the game ends.
+**
+**	<p>File layout: a header, big-endian like <code>DataOutputStream</code> writes it, of the int <code>MAGIC</code>, the
+**		int <code>VERSION</code>, columns and rows as ints, the image the puzzle was made from as a UTF string, and the time
+**		recording started as a long in milliseconds since 1970. Then the tile in each slot at the start, then one entry per
+**		step of the empty tile, all as varints. A step's varint holds the milliseconds since the step before it, shifted
+**		left 2 bits, with the <code>Board</code> direction in the low 2 bits, so a quick move takes a single byte.</p>
+**
+**	<p>Varints are stored 7 bits to a byte, lowest bits first, with the top bit of every byte but the last set.</p>
+**
+**	<p>Moves are often made on the Swing event thread, so a step is only added to a buffer in memory as it happens. The
+**		game loop calls <code>flush()</code> every update to write the buffer to the file, so a replay is complete up to the
+**		last update even if the game doesn't get to close it.</p>
+**/
+public class ReplayWriter implements MoveListener, Closeable
+{
+	public static final int MAGIC = 0x53525059; // "SRPY"
+	public static final int VERSION = 1;
+	/**System property naming the directory the game records replays to. Nothing is recorded without it.**/
+	public static final String DIRECTORY_PROPERTY = "slidypuzzles.replayDir";
+	
+	private final File file;
+	private final FileOutputStream fileOut;
+	private final ByteArrayOutputStream pending; // steps not written to the file yet
+	private final DataOutputStream out; // writes to pending
+	private long lastNanos;
+	private int moves;
+	private IOException failure;
+	
+	/**
+	**	Creates the file and writes the header.
+	**	@param initial The board as the game starts, after shuffling.
+	**	@param imageId What the puzzle's picture is, like its file path or URL. May be null.
+	**/
+	public ReplayWriter(File file, Board initial, String imageId) throws IOException
+	{
+		this.file = file;
+		fileOut = new FileOutputStream(file);
+		pending = new ByteArrayOutputStream(256);
+		out = new DataOutputStream(pending);
+		try
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(initial.getColumns());
+			out.writeInt(initial.getRows());
+			out.writeUTF((imageId == null) ? "" : imageId);
+			out.writeLong(System.currentTimeMillis());
+			for (int slot = 0; slot < initial.getSize(); ++slot)
+				writeVarint(initial.getTile(slot));
+			pending.writeTo(fileOut);
+			pending.reset();
+		}
+		catch (IOException ioe)
+		{
+			fileOut.close();
+			throw ioe;
+		}
+		lastNanos = System.nanoTime();
+		moves = 0;
+		failure = null;
+	}
+	
+	/**
+	**	Creates a writer for a new file in the directory named by <code>DIRECTORY_PROPERTY</code>.
+	**	@return The writer, or null if the property isn't set or the file couldn't be made.
+	**/
+	public static ReplayWriter create(Board initial, String imageId)
+	{
+		String directory = System.getProperty(DIRECTORY_PROPERTY);
+		if (directory == null)
+			return null;
+		File dir = new File(directory);
+		dir.mkdirs();
+		File file = new File(dir, "replay-" + System.currentTimeMillis() + ".srp");
+		try
+		{
+			return new ReplayWriter(file, initial, imageId);
+		}
+		catch (IOException ioe)
+		{
+			System.out.println("Not recording a replay: " + ioe.getMessage());
+			return null;
+		}
+	}
+	
+	public File getFile()
+	{
+		return file;
+	}
+	
+	/**
+	**	Returns the number of steps recorded so far.
+	**/
+	public synchronized int getMoveCount()
+	{
+		return moves;
+	}
+	
+	/**
+	**	Returns what went wrong writing a step, or null if nothing did. The writer stops recording after a failure.
+	**/
+	public synchronized IOException getFailure()
+	{
+		return failure;
+	}
+	
+	/**
+	**	Adds a step to the buffer. Nothing is written to the file until <code>flush()</code>.
+	**/
+	public synchronized void emptyMoved(int direction)
+	{
+		if (failure != null)
+			return;
+		long now = System.nanoTime();
+		long millis = (now - lastNanos) / 1000000;
+		lastNanos += millis * 1000000; // keep the leftover so rounding doesn't build up
+		try
+		{
+			writeVarint((millis << 2) | direction);
+			++moves;
+		}
+		catch (IOException ioe) // can't happen writing to memory
+		{
+			failure = ioe;
+		}
+	}
+	
+	/**
+	**	Writes the steps made since the last flush to the file. The file is written outside the lock the moves take, so a
+	**		move made meanwhile never waits on the disk. Only call this from one thread at a time, like the game loop's.
+	**/
+	public void flush()
+	{
+		byte[] steps;
+		synchronized (this)
+		{
+			if (failure != null || pending.size() == 0)
+				return;
+			steps = pending.toByteArray();
+			pending.reset();
+		}
+		try
+		{
+			fileOut.write(steps);
+		}
+		catch (IOException ioe)
+		{
+			synchronized (this)
+			{
+				failure = ioe;
+			}
+			System.out.println("Stopped recording replay " + file + ": " + ioe.getMessage());
+		}
+	}
+	
+	/**
+	**	Writes any steps still in the buffer and closes the file.
+	**/
+	public void close() throws IOException
+	{
+		flush();
+		fileOut.close();
+	}
+	
+	private void writeVarint(long value) throws IOException
+	{
+		while ((value & ~0x7FL) != 0)
+		{
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,198 @@
+package bitzawolf.save;
+
+import bitzawolf.UserFiles;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+**	Keeps copies of scaled puzzle images on disk, named by a hash of their pixels, so a saved game can be resumed
+**		without loading and scaling its original image again. Loading one is a single memory-mapped read straight into the
+**		image's pixels.
+**
+**	<p>Every <code>load</code> is counted as a hit or a miss, across all caches, for <code>AtlasCacheMonitor</code>.</p>
+**
+**	<p>File layout, big-endian: the int <code>MAGIC</code>, the int <code>VERSION</code>, width and height as ints, the
+**		pixel hash as a long, then one RGB int per pixel, row by row.</p>
+**/
+public class AtlasCache
+{
+	public static final int MAGIC = 0x53504154; // "SPAT"
+	public static final int VERSION = 1;
+	
+	private static final int HEADER_SIZE = 24;
+	private static final String PREFIX = "atlas-", SUFFIX = ".bin";
+	private static final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+	
+	private final File directory;
+	
+	/**
+	**	Creates a cache in the <code>cache</code> directory of the game's files, see <code>UserFiles</code>.
+	**/
+	public AtlasCache()
+	{
+		this(new File(UserFiles.getDirectory(), "cache"));
+	}
+	
+	public AtlasCache(File directory)
+	{
+		this.directory = directory;
+	}
+	
+	/**
+	**	Returns a 64-bit hash of the image's size and pixels.
+	**/
+	public static long hash(BufferedImage image)
+	{
+		int width = image.getWidth();
+		int height = image.getHeight();
+		long h = start(width, height);
+		int[] row = new int[width];
+		for (int y = 0; y < height; ++y)
+		{
+			image.getRGB(0, y, width, 1, row, 0, width);
+			h = add(h, row, width);
+		}
+		return h;
+	}
+	
+	/**
+	**	Starts an FNV-1a hash, which <code>add</code> then feeds a pixel at a time.
+	**/
+	private static long start(int width, int height)
+	{
+		long h = 0xCBF29CE484222325L;
+		h = (h ^ width) * 0x100000001B3L;
+		return (h ^ height) * 0x100000001B3L;
+	}
+	
+	private static long add(long h, int[] pixels, int count)
+	{
+		for (int i = 0; i < count; ++i)
+			h = (h ^ (pixels[i] & 0xFFFFFF)) * 0x100000001B3L;
+		return h;
+	}
+	
+	public File getFile(long hash)
+	{
+		return new File(directory, PREFIX + String.format("%016x", hash) + SUFFIX);
+	}
+	
+	/**
+	**	Saves the image under its hash, unless it's already there.
+	**/
+	public void store(BufferedImage image, long hash) throws IOException
+	{
+		File file = getFile(hash);
+		int width = image.getWidth();
+		int height = image.getHeight();
+		if (file.length() == HEADER_SIZE + (long) width * height * 4)
+			return;
+		directory.mkdirs();
+		ByteBuffer data = ByteBuffer.allocate(HEADER_SIZE + width * height * 4);
+		data.putInt(MAGIC);
+		data.putInt(VERSION);
+		data.putInt(width);
+		data.putInt(height);
+		data.putLong(hash);
+		int[] row = new int[width];
+		for (int y = 0; y < height; ++y)
+		{
+			image.getRGB(0, y, width, 1, row, 0, width);
+			data.asIntBuffer().put(row);
+			data.position(data.position() + width * 4);
+		}
+		UserFiles.writeAtomically(file, data.array());
+	}
+	
+	/**
+	**	Loads the image saved under a hash.
+	**	@return The image, or null if it isn't in the cache or the file doesn't match its hash.
+	**/
+	public BufferedImage load(long hash)
+	{
+		BufferedImage image = read(hash);
+		if (image == null)
+			misses.incrementAndGet();
+		else
+			hits.incrementAndGet();
+		return image;
+	}
+	
+	private BufferedImage read(long hash)
+	{
+		File file = getFile(hash);
+		if (! file.isFile())
+			return null;
+		try
+		{
+			MappedByteBuffer mapped;
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try
+			{
+				FileChannel channel = raf.getChannel();
+				mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+			finally
+			{
+				raf.close(); // the mapping stays valid after the channel is closed
+			}
+			mapped.order(ByteOrder.BIG_ENDIAN);
+			if (mapped.remaining() < HEADER_SIZE || mapped.getInt() != MAGIC || mapped.getInt() != VERSION)
+				return null;
+			int width = mapped.getInt();
+			int height = mapped.getInt();
+			if (width <= 0 || height <= 0 || mapped.getLong() != hash || mapped.remaining() != (long) width * height * 4)
+				return null;
+			BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+			mapped.asIntBuffer().get(pixels);
+			if (add(start(width, height), pixels, pixels.length) != hash)
+				return null;
+			return image;
+		}
+		catch (IOException ioe)
+		{
+			System.out.println("Ignoring cached image " + file + ": " + ioe.getMessage());
+			return null;
+		}
+	}
+	
+	/**
+	**	Returns the number of loads, by any cache, that found their image.
+	**/
+	public static long getHits()
+	{
+		return hits.get();
+	}
+	
+	/**
+	**	Returns the number of loads, by any cache, that didn't find their image or found it damaged.
+	**/
+	public static long getMisses()
+	{
+		return misses.get();
+	}
+	
+	/**
+	**	Deletes every cached image but the one with the given hash.
+	**/
+	public void removeAllExcept(long hash)
+	{
+		File keep = getFile(hash);
+		File[] files = directory.listFiles();
+		if (files == null)
+			return;
+		for (File f : files)
+		{
+			if (f.getName().startsWith(PREFIX) && f.getName().endsWith(SUFFIX) && ! f.equals(keep))
+				f.delete();
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,24 @@
+package bitzawolf.save;
+
+/**
+**	Publishes how often resuming a game finds its scaled image in the <code>AtlasCache</code>.
+**/
+public class AtlasCacheMonitor implements AtlasCacheMonitorMBean
+{
+	public long getHits()
+	{
+		return AtlasCache.getHits();
+	}
+	
+	public long getMisses()
+	{
+		return AtlasCache.getMisses();
+	}
+	
+	public double getHitRate()
+	{
+		long hits = AtlasCache.getHits();
+		long total = hits + AtlasCache.getMisses();
+		return (total == 0) ? 0 : (double) hits / total;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,12 @@
+package bitzawolf.save;
+
+/**
+**	What the atlas cache publishes over JMX, see <code>convcomm.engine.util.Monitoring</code>.
+**/
+public interface AtlasCacheMonitorMBean
+{
+	public long getHits();
+	public long getMisses();
+	/**Hits as a fraction of all loads, or 0 if there haven't been any.**/
+	public double getHitRate();
+}
\ No newline at end of file
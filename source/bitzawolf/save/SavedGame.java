@@ -0,0 +1,211 @@
+package bitzawolf.save;
+
+import bitzawolf.Board;
+import bitzawolf.MoveLog;
+import bitzawolf.TileGrid;
+import bitzawolf.UserFiles;
+import convcomm.engine.util.ImageLoader;
+
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import javax.swing.ImageIcon;
+
+/**
+**	A puzzle that was left before it was finished: the tiles, the moves made so far, how long it's been played and which
+**		image it's of. The scaled image itself goes in an <code>AtlasCache</code>, and the save remembers its hash, so
+**		resuming on a screen of the same size reads the cached pixels instead of loading and scaling the image again.
+**
+**	<p>File layout, big-endian: the int <code>MAGIC</code>, the int <code>VERSION</code>, columns and rows as ints, the
+**		image as a UTF string, the milliseconds played as a long, the screen width and height the image was scaled for as
+**		ints, the scaled image's hash as a long, the tile in each slot as ints, then the moves as written by
+**		<code>MoveLog.write</code>. Saving replaces the file atomically, so a crash never leaves half a save behind.</p>
+**/
+public class SavedGame
+{
+	public static final int MAGIC = 0x53505356; // "SPSV"
+	public static final int VERSION = 1;
+	
+	private final String imageId;
+	private final int columns, rows;
+	private final int[] tiles;
+	private final MoveLog moveLog;
+	private final long elapsedTime;
+	private final int screenWidth, screenHeight;
+	private final long atlasHash;
+	
+	/**
+	**	@param imageId The image the puzzle is of, as a file path or URL.
+	**	@param elapsedTime The milliseconds the puzzle has been played.
+	**	@param atlasHash The <code>AtlasCache.hash</code> of the grid's scaled image.
+	**/
+	public SavedGame(String imageId, Board board, MoveLog moveLog, long elapsedTime, int screenWidth, int screenHeight, long atlasHash)
+	{
+		this.imageId = imageId;
+		columns = board.getColumns();
+		rows = board.getRows();
+		tiles = board.toArray();
+		this.moveLog = moveLog.snapshot();
+		this.elapsedTime = elapsedTime;
+		this.screenWidth = screenWidth;
+		this.screenHeight = screenHeight;
+		this.atlasHash = atlasHash;
+	}
+	
+	/**
+	**	Returns the file the game keeps its one saved game in.
+	**/
+	public static File getDefaultFile()
+	{
+		return UserFiles.getFile("saved-game.sps");
+	}
+	
+	public String getImageId()
+	{
+		return imageId;
+	}
+	
+	public int getColumns()
+	{
+		return columns;
+	}
+	
+	public int getRows()
+	{
+		return rows;
+	}
+	
+	public Board getBoard()
+	{
+		return new Board(columns, rows, tiles);
+	}
+	
+	public MoveLog getMoveLog()
+	{
+		return moveLog.snapshot();
+	}
+	
+	/**
+	**	Returns the number of moves made, not counting undone ones.
+	**/
+	public int getMoveCount()
+	{
+		return moveLog.getPosition();
+	}
+	
+	/**
+	**	Returns the milliseconds the puzzle has been played.
+	**/
+	public long getElapsedTime()
+	{
+		return elapsedTime;
+	}
+	
+	public long getAtlasHash()
+	{
+		return atlasHash;
+	}
+	
+	/**
+	**	Makes the grid to carry on playing with. If the screen is the size the game was saved at and the scaled image is
+	**		in the cache, the grid is made straight from the cached pixels; otherwise the original image is loaded and scaled,
+	**		which can take a while, so do it on an <code>ImageLoader</code>'s threads.
+	**	@throws IOException if neither is available.
+	**/
+	public TileGrid createGrid(AtlasCache cache, int screenWidth, int screenHeight) throws IOException
+	{
+		try
+		{
+			if (screenWidth == this.screenWidth && screenHeight == this.screenHeight)
+			{
+				BufferedImage atlas = cache.load(atlasHash);
+				if (atlas != null)
+					return new TileGrid(columns, rows, atlas, tiles, moveLog);
+			}
+			return new TileGrid(columns, rows, loadImage(imageId), screenWidth, screenHeight, tiles, moveLog);
+		}
+		catch (IllegalArgumentException iae)
+		{
+			throw new IOException("The saved puzzle is damaged: " + iae.getMessage());
+		}
+	}
+	
+	/**
+	**	Loads an image from a URL, or from a file path if it isn't one.
+	**/
+	private static ImageIcon loadImage(String imageId) throws IOException
+	{
+		BufferedImage image;
+		try
+		{
+			image = ImageLoader.read(new URL(imageId), null);
+		}
+		catch (MalformedURLException mue)
+		{
+			image = ImageLoader.read(new File(imageId), null);
+		}
+		return new ImageIcon(image, imageId);
+	}
+	
+	public void save(File file) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + tiles.length * 4 + moveLog.getLength() / 4);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(columns);
+		out.writeInt(rows);
+		out.writeUTF((imageId == null) ? "" : imageId);
+		out.writeLong(elapsedTime);
+		out.writeInt(screenWidth);
+		out.writeInt(screenHeight);
+		out.writeLong(atlasHash);
+		for (int tile : tiles)
+			out.writeInt(tile);
+		moveLog.write(out);
+		out.flush();
+		UserFiles.writeAtomically(file, bytes.toByteArray());
+	}
+	
+	/**
+	**	Reads a saved game, in one read of the whole file.
+	**	@throws IOException if the file can't be read or isn't a saved game.
+	**/
+	public static SavedGame load(File file) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file.toPath())));
+		try
+		{
+			if (in.readInt() != MAGIC)
+				throw new IOException(file + " is not a saved game");
+			int version = in.readInt();
+			if (version != VERSION)
+				throw new IOException(file + " has unsupported version " + version);
+			int columns = in.readInt();
+			int rows = in.readInt();
+			if (columns < 2 || rows < 2 || (long) columns * rows > in.available() / 4)
+				throw new IOException(file + " has a bad board size " + columns + " x " + rows);
+			String imageId = in.readUTF();
+			long elapsedTime = in.readLong();
+			int screenWidth = in.readInt();
+			int screenHeight = in.readInt();
+			long atlasHash = in.readLong();
+			int[] tiles = new int[columns * rows];
+			for (int i = 0; i < tiles.length; ++i)
+				tiles[i] = in.readInt();
+			MoveLog moveLog = MoveLog.read(in, in.available());
+			Board board = new Board(columns, rows, tiles);
+			return new SavedGame(imageId, board, moveLog, elapsedTime, screenWidth, screenHeight, atlasHash);
+		}
+		catch (EOFException eofe)
+		{
+			throw new IOException(file + " is truncated");
+		}
+		catch (IllegalArgumentException iae)
+		{
+			throw new IOException(file + " has a bad board: " + iae.getMessage());
+		}
+	}
+}
\ No newline at end of file
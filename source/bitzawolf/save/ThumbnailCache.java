@@ -0,0 +1,257 @@
+package bitzawolf.save;
+
+import bitzawolf.UserFiles;
+import convcomm.engine.util.ImageLoader;
+
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+**	Makes the small previews of pictures shown while choosing one, and keeps them on disk so a folder of big photos is
+**		only ever decoded once. The thumbnails are kept in a single pack file that stays memory-mapped, so showing one made
+**		before, even in an earlier game, is a read straight out of the mapping. A thumbnail is found by the picture's path
+**		or URL, the thumbnail's size and when the picture was last changed, so an edited picture gets a new one.
+**
+**	<p>Getting a thumbnail can mean decoding the whole picture, so do it on an <code>ImageLoader</code>'s threads, never
+**		the Swing event thread. The pack is only ever added to; when it would grow past <code>MAX_BYTES</code> it's emptied
+**		and starts again. If it can't be opened, thumbnails are still made but not kept.</p>
+**
+**	<p>File layout, big-endian: the int <code>MAGIC</code>, the int <code>VERSION</code>, then the int offset where the
+**		next thumbnail goes, since the file is mapped ahead of what's in it. Each thumbnail is the picture's path or URL as
+**		an int length and UTF-8 bytes, the picture's modification time as a long, the size, width and height as ints, then
+**		one RGB int per pixel, row by row.</p>
+**/
+public class ThumbnailCache
+{
+	public static final int MAGIC = 0x53505448; // "SPTH"
+	public static final int VERSION = 1;
+	/**The most bytes the pack file holds.**/
+	public static final int MAX_BYTES = 16 << 20;
+	
+	private static final int HEADER_SIZE = 12;
+	private static final int END_OFFSET = 8; // where the header keeps the offset of the next thumbnail
+	private static final int MIN_CAPACITY = 1 << 20;
+	
+	private static ThumbnailCache shared;
+	
+	private final File file;
+	private final HashMap<String, Integer> index; // size and source to where the newest thumbnail for them starts
+	private MappedByteBuffer mapped; // null until the pack is first used
+	private int end;
+	private boolean unavailable; // the pack couldn't be opened
+	
+	public ThumbnailCache(File file)
+	{
+		this.file = file;
+		index = new HashMap<String, Integer>();
+	}
+	
+	/**
+	**	Returns the cache shared by the whole game, kept in the <code>cache</code> directory of the game's files, see
+	**		<code>UserFiles</code>.
+	**/
+	public static synchronized ThumbnailCache getShared()
+	{
+		if (shared == null)
+			shared = new ThumbnailCache(new File(new File(UserFiles.getDirectory(), "cache"), "thumbnails.pack"));
+		return shared;
+	}
+	
+	/**
+	**	Returns a picture file scaled down to fit inside a square, from the pack if it's there, otherwise decoded, scaled and
+	**		added to it.
+	**	@param size The width and height of the square.
+	**	@throws IOException if the picture has to be decoded and can't be.
+	**/
+	public BufferedImage get(File picture, int size) throws IOException
+	{
+		String source = picture.getPath();
+		long modified = picture.lastModified();
+		BufferedImage thumbnail = find(source, size, modified);
+		if (thumbnail == null)
+		{
+			thumbnail = ImageLoader.readScaled(picture, size, size, null);
+			store(source, size, modified, thumbnail);
+		}
+		return thumbnail;
+	}
+	
+	/**
+	**	Returns a picture from a URL, like a resource in the game's jar, scaled down to fit inside a square, see
+	**		<code>get(File, int)</code>.
+	**/
+	public BufferedImage get(URL picture, int size) throws IOException
+	{
+		if (picture == null)
+			throw new FileNotFoundException("No image given");
+		String source = picture.toExternalForm();
+		long modified = picture.openConnection().getLastModified();
+		BufferedImage thumbnail = find(source, size, modified);
+		if (thumbnail == null)
+		{
+			thumbnail = ImageLoader.readScaled(picture, size, size, null);
+			store(source, size, modified, thumbnail);
+		}
+		return thumbnail;
+	}
+	
+	/**
+	**	Returns the thumbnail in the pack for a picture as it was at a modification time, or null if there isn't one.
+	**/
+	private synchronized BufferedImage find(String source, int size, long modified)
+	{
+		Integer offset = index.get(size + " " + source);
+		if (offset == null || ! open())
+			return null;
+		ByteBuffer in = mapped.duplicate();
+		in.position(offset);
+		in.position(offset + 4 + in.getInt());
+		if (in.getLong() != modified)
+			return null;
+		in.getInt();
+		int width = in.getInt();
+		int height = in.getInt();
+		BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		int[] pixels = new int[width * height];
+		in.asIntBuffer().get(pixels);
+		thumbnail.setRGB(0, 0, width, height, pixels, 0, width);
+		return thumbnail;
+	}
+	
+	/**
+	**	Adds a thumbnail to the end of the pack, emptying the pack first if it wouldn't fit.
+	**/
+	private synchronized void store(String source, int size, long modified, BufferedImage thumbnail)
+	{
+		if (! open())
+			return;
+		byte[] name = source.getBytes(StandardCharsets.UTF_8);
+		int width = thumbnail.getWidth();
+		int height = thumbnail.getHeight();
+		long length = 4L + name.length + 8 + 12 + (long) width * height * 4;
+		if (HEADER_SIZE + length > MAX_BYTES)
+			return;
+		if (end + length > MAX_BYTES)
+		{
+			index.clear();
+			end = HEADER_SIZE;
+			mapped.putInt(END_OFFSET, end); // before the old thumbnails are written over, so they're never read back half gone
+		}
+		try
+		{
+			if (end + length > mapped.capacity())
+				map((int) Math.min(MAX_BYTES, Math.max(2L * mapped.capacity(), end + length)));
+		}
+		catch (IOException ioe)
+		{
+			System.out.println("Not keeping the thumbnail of " + source + ": " + ioe.getMessage());
+			return;
+		}
+		ByteBuffer out = mapped.duplicate();
+		out.position(end);
+		out.putInt(name.length);
+		out.put(name);
+		out.putLong(modified);
+		out.putInt(size);
+		out.putInt(width);
+		out.putInt(height);
+		out.asIntBuffer().put(thumbnail.getRGB(0, 0, width, height, null, 0, width));
+		index.put(size + " " + source, end);
+		end += (int) length;
+		mapped.putInt(END_OFFSET, end); // written last, so a thumbnail cut short is never read back
+	}
+	
+	/**
+	**	Maps the pack and reads its index the first time it's used.
+	**	@return Whether the pack can be used.
+	**/
+	private boolean open()
+	{
+		if (mapped != null || unavailable)
+			return mapped != null;
+		try
+		{
+			file.getParentFile().mkdirs();
+			map((int) Math.min(MAX_BYTES, Math.max(MIN_CAPACITY, file.length())));
+			readIndex();
+			return true;
+		}
+		catch (ClosedByInterruptException cbie)
+		{
+			mapped = null; // the thread was stopped, like a preview no longer wanted; the pack's tried again next time
+			return false;
+		}
+		catch (IOException ioe)
+		{
+			System.out.println("Not keeping thumbnails in " + file + ": " + ioe.getMessage());
+			mapped = null;
+			unavailable = true;
+			return false;
+		}
+	}
+	
+	/**
+	**	Maps the pack file, making it at least the given number of bytes long.
+	**/
+	private void map(int capacity) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try
+		{
+			mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, Math.max(capacity, raf.length()));
+		}
+		finally
+		{
+			raf.close(); // the mapping stays valid after the channel is closed
+		}
+	}
+	
+	/**
+	**	Finds the thumbnails already in the pack, keeping every one up to the first that doesn't make sense. A pack that
+	**		isn't one, like a new empty file, is started afresh.
+	**/
+	private void readIndex()
+	{
+		ByteBuffer in = mapped.duplicate();
+		end = HEADER_SIZE;
+		if (in.getInt() != MAGIC || in.getInt() != VERSION)
+		{
+			in.clear();
+			in.putInt(MAGIC);
+			in.putInt(VERSION);
+			in.putInt(end);
+			return;
+		}
+		int last = in.getInt();
+		if (last < HEADER_SIZE || last > in.capacity())
+			last = HEADER_SIZE;
+		while (in.position() < last)
+		{
+			int offset = in.position();
+			if (last - offset < 4)
+				break;
+			int nameLength = in.getInt();
+			if (nameLength < 0 || nameLength > last - in.position() - 20)
+				break;
+			byte[] name = new byte[nameLength];
+			in.get(name);
+			in.getLong();
+			int size = in.getInt();
+			int width = in.getInt();
+			int height = in.getInt();
+			if (width <= 0 || height <= 0 || (long) width * height * 4 > last - in.position())
+				break;
+			in.position(in.position() + width * height * 4);
+			index.put(size + " " + new String(name, StandardCharsets.UTF_8), offset);
+			end = in.position();
+		}
+		mapped.putInt(END_OFFSET, end);
+	}
+}
\ No newline at end of file
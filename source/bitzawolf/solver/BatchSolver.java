@@ -0,0 +1,360 @@
+package bitzawolf.solver;
+
+import bitzawolf.Board;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+**	Command line tool that solves every board in a file without starting the game. Each line of the input holds one
+**		board as the tile in each slot, separated by spaces or commas, with 0 as the empty space. Blank lines and lines
+**		starting with # are skipped.
+**
+**	<p>Lines are read by one thread, solved by a number of worker threads and written by another, connected by bounded
+**		queues, so a corpus of any length is solved in constant memory. Results are written as they finish, one line each:
+**		the input line number, the number of moves, the nodes expanded and the time taken in microseconds, separated by
+**		tabs, and optionally the solution as the letters U, R, D and L for the steps of the empty space. Boards that can't
+**		be solved or read are written as the line number followed by <code>ERROR</code> and the reason.</p>
+**
+**	<p>Usage: <code>java -cp "Slidy Puzzles.jar" bitzawolf.solver.BatchSolver input output [-workers n] [-size columns
+**		rows] [-pdb directory] [-nodes limit] [-moves]</code>. Without <code>-size</code>, boards are taken to be square.</p>
+**/
+public class BatchSolver
+{
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String DIRECTIONS = "URDL";
+	private static final int QUEUE_SLOTS_PER_WORKER = 64;
+	
+	private final int columns, rows;
+	private final File pdbDirectory;
+	private final long nodeLimit;
+	private final boolean writeMoves;
+	private final HashMap<String, Heuristic> heuristics;
+	
+	public static void main(String[] args) throws Exception
+	{
+		if (args.length < 2)
+		{
+			System.out.println("Usage: BatchSolver input output [-workers n] [-size columns rows] [-pdb directory] [-nodes limit] [-moves]");
+			System.exit(1);
+		}
+		int workers = Runtime.getRuntime().availableProcessors();
+		int columns = 0, rows = 0;
+		File pdbDirectory = null;
+		long nodeLimit = 0;
+		boolean writeMoves = false;
+		for (int i = 2; i < args.length; ++i)
+		{
+			if (args[i].equals("-workers"))
+				workers = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-size"))
+			{
+				columns = Integer.parseInt(args[++i]);
+				rows = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("-pdb"))
+				pdbDirectory = new File(args[++i]);
+			else if (args[i].equals("-nodes"))
+				nodeLimit = Long.parseLong(args[++i]);
+			else if (args[i].equals("-moves"))
+				writeMoves = true;
+			else
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+		}
+		long start = System.currentTimeMillis();
+		long solved = new BatchSolver(columns, rows, pdbDirectory, nodeLimit, writeMoves).run(Paths.get(args[0]), Paths.get(args[1]), workers);
+		System.out.println("Solved " + solved + " boards in " + (System.currentTimeMillis() - start) + " ms");
+	}
+	
+	/**
+	**	@param columns The board width, or 0 to take every board as square.
+	**	@param rows The board height, or 0 to take every board as square.
+	**	@param pdbDirectory Where to look for pattern databases, or null to always use Manhattan distance.
+	**	@param nodeLimit The most nodes to expand per board, or 0 for no limit.
+	**	@param writeMoves If the solution itself is written too.
+	**/
+	public BatchSolver(int columns, int rows, File pdbDirectory, long nodeLimit, boolean writeMoves)
+	{
+		this.columns = columns;
+		this.rows = rows;
+		this.pdbDirectory = pdbDirectory;
+		this.nodeLimit = nodeLimit;
+		this.writeMoves = writeMoves;
+		heuristics = new HashMap<String, Heuristic>();
+	}
+	
+	/**
+	**	Solves every board in the input file and writes the results to the output file.
+	**	@return The number of boards solved.
+	**/
+	public long run(Path input, Path output, int workerCount) throws IOException, InterruptedException
+	{
+		BlockingQueue<Job> jobs = new ArrayBlockingQueue<Job>(workerCount * QUEUE_SLOTS_PER_WORKER);
+		BlockingQueue<Result> results = new ArrayBlockingQueue<Result>(workerCount * QUEUE_SLOTS_PER_WORKER);
+		Worker[] workers = new Worker[workerCount];
+		for (int i = 0; i < workerCount; ++i)
+		{
+			workers[i] = new Worker(jobs, results);
+			workers[i].start();
+		}
+		ResultWriter writer = new ResultWriter(output, results);
+		writer.start();
+		
+		BufferedReader reader = Files.newBufferedReader(input, UTF8);
+		try
+		{
+			String line;
+			long lineNumber = 0;
+			while ((line = reader.readLine()) != null)
+			{
+				++lineNumber;
+				line = line.trim();
+				if (line.length() != 0 && line.charAt(0) != '#')
+					jobs.put(new Job(lineNumber, line));
+			}
+		}
+		finally
+		{
+			reader.close();
+			for (int i = 0; i < workerCount; ++i)
+				jobs.put(Job.END);
+		}
+		
+		long solved = 0;
+		for (Worker worker : workers)
+		{
+			worker.join();
+			solved += worker.solved;
+		}
+		results.put(Result.END);
+		writer.join();
+		if (writer.failure != null)
+			throw writer.failure;
+		return solved;
+	}
+	
+	/**
+	**	Returns the heuristic for a board size, loading pattern databases the first time a size is seen.
+	**/
+	private synchronized Heuristic getHeuristic(int columns, int rows)
+	{
+		String key = columns + "x" + rows;
+		Heuristic heuristic = heuristics.get(key);
+		if (heuristic == null)
+		{
+			if (pdbDirectory != null)
+			{
+				try
+				{
+					heuristic = PatternDatabaseHeuristic.load(pdbDirectory, columns, rows);
+				}
+				catch (IOException ioe)
+				{
+					System.out.println("Ignoring pattern databases for " + key + ": " + ioe.getMessage());
+				}
+			}
+			if (heuristic == null)
+				heuristic = new ManhattanHeuristic(columns, rows);
+			heuristics.put(key, heuristic);
+		}
+		return heuristic;
+	}
+	
+	private static int[] parse(String line)
+	{
+		String[] tokens = line.split("[\\s,]+");
+		int[] tiles = new int[tokens.length];
+		for (int i = 0; i < tokens.length; ++i)
+			tiles[i] = Integer.parseInt(tokens[i]);
+		return tiles;
+	}
+	
+	private static class Job
+	{
+		static final Job END = new Job(-1, null);
+		
+		final long lineNumber;
+		final String line;
+		
+		Job(long lineNumber, String line)
+		{
+			this.lineNumber = lineNumber;
+			this.line = line;
+		}
+	}
+	
+	private static class Result
+	{
+		static final Result END = new Result(null);
+		
+		final String line;
+		
+		Result(String line)
+		{
+			this.line = line;
+		}
+	}
+	
+	/**
+	**	Solves jobs until it is handed <code>Job.END</code>, keeping one solver per board size. A board that makes the
+	**		solver throw is written as an error like any other, so one bad line never stops a worker.
+	**/
+	private class Worker extends Thread
+	{
+		private final BlockingQueue<Job> jobs;
+		private final BlockingQueue<Result> results;
+		private final HashMap<String, Solver> solvers;
+		private final StringBuilder sb;
+		long solved;
+		
+		Worker(BlockingQueue<Job> jobs, BlockingQueue<Result> results)
+		{
+			super("BatchSolver-Worker");
+			this.jobs = jobs;
+			this.results = results;
+			solvers = new HashMap<String, Solver>();
+			sb = new StringBuilder();
+			solved = 0;
+		}
+		
+		public void run()
+		{
+			try
+			{
+				while (true)
+				{
+					Job job = jobs.take();
+					if (job == Job.END)
+						return;
+					String result;
+					try
+					{
+						result = solve(job);
+					}
+					catch (RuntimeException re) // like a heuristic that doesn't support the board's shape
+					{
+						result = job.lineNumber + "\tERROR\t" + re;
+					}
+					results.put(new Result(result));
+				}
+			}
+			catch (InterruptedException ie)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		private String solve(Job job)
+		{
+			sb.setLength(0);
+			sb.append(job.lineNumber).append('\t');
+			Board board;
+			try
+			{
+				int[] tiles = parse(job.line);
+				int boardColumns = columns, boardRows = rows;
+				if (boardColumns == 0)
+				{
+					boardColumns = (int) Math.round(Math.sqrt(tiles.length));
+					boardRows = boardColumns;
+				}
+				board = new Board(boardColumns, boardRows, tiles);
+			}
+			catch (IllegalArgumentException iae) // includes NumberFormatException
+			{
+				return sb.append("ERROR\t").append(iae.getMessage()).toString();
+			}
+			
+			String key = board.getColumns() + "x" + board.getRows();
+			Solver solver = solvers.get(key);
+			if (solver == null)
+			{
+				solver = new Solver(board.getColumns(), board.getRows(), getHeuristic(board.getColumns(), board.getRows()));
+				solver.setNodeLimit(nodeLimit);
+				solvers.put(key, solver);
+			}
+			long start = System.nanoTime();
+			int[] solution = solver.solve(board);
+			long micros = (System.nanoTime() - start) / 1000;
+			if (solution == null)
+			{
+				String reason = board.isSolvable() ? "node limit reached after " + solver.getNodesExpanded() + " nodes" : "unsolvable";
+				return sb.append("ERROR\t").append(reason).toString();
+			}
+			++solved;
+			sb.append(solution.length).append('\t').append(solver.getNodesExpanded()).append('\t').append(micros);
+			if (writeMoves)
+			{
+				sb.append('\t');
+				for (int direction : solution)
+					sb.append(DIRECTIONS.charAt(direction));
+			}
+			return sb.toString();
+		}
+	}
+	
+	/**
+	**	Writes results until it is handed <code>Result.END</code>.
+	**/
+	private static class ResultWriter extends Thread
+	{
+		private final Path output;
+		private final BlockingQueue<Result> results;
+		IOException failure;
+		
+		ResultWriter(Path output, BlockingQueue<Result> results)
+		{
+			super("BatchSolver-Writer");
+			this.output = output;
+			this.results = results;
+		}
+		
+		public void run()
+		{
+			try
+			{
+				BufferedWriter writer = Files.newBufferedWriter(output, UTF8);
+				try
+				{
+					while (true)
+					{
+						Result result = results.take();
+						if (result == Result.END)
+							return;
+						writer.write(result.line);
+						writer.newLine();
+					}
+				}
+				finally
+				{
+					writer.close();
+				}
+			}
+			catch (IOException ioe)
+			{
+				failure = ioe;
+				drain(); // keep the workers from blocking forever on a full queue
+			}
+			catch (InterruptedException ie)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		private void drain()
+		{
+			try
+			{
+				while (results.take() != Result.END);
+			}
+			catch (InterruptedException ie)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,22 @@
+package bitzawolf.solver;
+
+/**
+**	Estimates how many moves are left to solve a board. The solver only finds optimal solutions if the estimate never
+**		goes over the real number of moves, and it is fastest when the estimate is as close to that as possible.
+**
+**	<p>Boards are passed as two arrays: the tile in each slot and the slot of each tile. Tile 0 is the empty space.
+**		Implementations are called on every node of a search, so they should allocate nothing, and they may be shared by
+**		several searches running on different threads, so they should keep no state between calls.</p>
+**/
+public interface Heuristic
+{
+	/**Calculates the estimate of a whole board from scratch.**/
+	public int estimate(int[] tiles, int[] slots);
+	
+	/**
+	**	Updates an estimate after a tile has stepped from one slot into the neighboring empty slot. The arrays already
+	**		show the board after the step.
+	**	@param h The estimate before the step.
+	**/
+	public int update(int[] tiles, int[] slots, int tile, int from, int to, int h);
+}
\ No newline at end of file
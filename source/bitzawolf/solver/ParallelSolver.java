@@ -0,0 +1,240 @@
+package bitzawolf.solver;
+
+import bitzawolf.Board;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+**	Runs the same iterative-deepening A* search as <code>Solver</code> on several cores. For every bound, the top few
+**		levels of the search tree are expanded on the calling thread until there are enough subtrees to keep every worker
+**		busy, then the subtrees are searched as fork-join tasks. Workers share the smallest estimate that went over the
+**		bound, which becomes the next bound, and all of them stop as soon as one finds a solution.
+**
+**	<p>Any solution found for a bound is exactly as long as the bound, so the parallel search returns optimal solutions
+**		just like the single-threaded one, though not always the same one.</p>
+**/
+public class ParallelSolver
+{
+	private static final int SUBTREES_PER_WORKER = 32;
+	
+	private final int columns, rows;
+	private final Heuristic heuristic;
+	private final ForkJoinPool pool;
+	private final ThreadLocal<Solver> workers;
+	private final AtomicLong nodes;
+	
+	/**
+	**	Creates a parallel solver using one worker per available processor.
+	**/
+	public ParallelSolver(int columns, int rows, Heuristic heuristic)
+	{
+		this(columns, rows, heuristic, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	**	Creates a parallel solver with at most <code>parallelism</code> workers.
+	**/
+	public ParallelSolver(final int columns, final int rows, final Heuristic heuristic, int parallelism)
+	{
+		if (parallelism < 1)
+			throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+		this.columns = columns;
+		this.rows = rows;
+		this.heuristic = heuristic;
+		pool = new ForkJoinPool(parallelism);
+		workers = new ThreadLocal<Solver>()
+		{
+			protected Solver initialValue()
+			{
+				return new Solver(columns, rows, heuristic);
+			}
+		};
+		nodes = new AtomicLong();
+	}
+	
+	public int getParallelism()
+	{
+		return pool.getParallelism();
+	}
+	
+	/**
+	**	Returns the number of nodes expanded by all workers during the last call to <code>solve</code>.
+	**/
+	public long getNodesExpanded()
+	{
+		return nodes.get();
+	}
+	
+	/**
+	**	Stops the worker threads. The solver can't be used afterwards.
+	**/
+	public void shutdown()
+	{
+		pool.shutdown();
+	}
+	
+	/**
+	**	Finds an optimal solution for the board.
+	**	@return The directions the empty space steps in, in order. The array is empty if the board is already solved, and
+	**		null if the board can't be solved.
+	**/
+	public int[] solve(Board board)
+	{
+		if (board.getColumns() != columns || board.getRows() != rows)
+			throw new IllegalArgumentException("Solver is for " + columns + " x " + rows + " boards, not " + board.getColumns() + " x " + board.getRows());
+		nodes.set(0);
+		if (! board.isSolvable())
+			return null;
+		int bound = estimate(board);
+		while (true)
+		{
+			ArrayList<Subtree> subtrees = new ArrayList<Subtree>();
+			AtomicInteger nextBound = new AtomicInteger(Integer.MAX_VALUE);
+			int[] solution = split(new Subtree(new Board(board), new int[0], estimate(board)), bound, subtrees, nextBound);
+			if (solution != null)
+				return solution;
+			
+			AtomicBoolean stop = new AtomicBoolean(false);
+			AtomicReference<int[]> found = new AtomicReference<int[]>();
+			if (! subtrees.isEmpty())
+				pool.invoke(new SearchTask(subtrees, 0, subtrees.size(), bound, nextBound, stop, found));
+			if (found.get() != null)
+				return found.get();
+			if (nextBound.get() == Integer.MAX_VALUE)
+				return null;
+			bound = nextBound.get();
+		}
+	}
+	
+	/**
+	**	Expands the tree breadth-first from the root until there are enough subtrees for every worker, or the bound
+	**		doesn't let the tree grow any more.
+	**	@return A solution, if one was found while expanding.
+	**/
+	private int[] split(Subtree root, int bound, ArrayList<Subtree> subtrees, AtomicInteger nextBound)
+	{
+		int wanted = pool.getParallelism() * SUBTREES_PER_WORKER;
+		ArrayList<Subtree> level = new ArrayList<Subtree>();
+		level.add(root);
+		while (! level.isEmpty() && level.size() < wanted)
+		{
+			ArrayList<Subtree> nextLevel = new ArrayList<Subtree>();
+			for (Subtree subtree : level)
+			{
+				int f = subtree.path.length + subtree.h;
+				if (f > bound)
+				{
+					lowerTo(nextBound, f);
+					continue;
+				}
+				if (subtree.h == 0)
+					return subtree.path;
+				nodes.incrementAndGet();
+				int previous = (subtree.path.length == 0) ? -1 : subtree.path[subtree.path.length - 1];
+				for (int direction = 0; direction < 4; ++direction)
+				{
+					if (direction == (previous ^ 2))
+						continue;
+					Board child = new Board(subtree.board);
+					if (child.moveBlank(direction) == -1)
+						continue;
+					int[] path = new int[subtree.path.length + 1];
+					System.arraycopy(subtree.path, 0, path, 0, subtree.path.length);
+					path[subtree.path.length] = direction;
+					nextLevel.add(new Subtree(child, path, estimate(child)));
+				}
+			}
+			level = nextLevel;
+		}
+		subtrees.addAll(level);
+		return null;
+	}
+	
+	private int estimate(Board board)
+	{
+		int[] tiles = board.toArray();
+		int[] slots = new int[tiles.length];
+		for (int slot = 0; slot < tiles.length; ++slot)
+			slots[tiles[slot]] = slot;
+		return heuristic.estimate(tiles, slots);
+	}
+	
+	private static void lowerTo(AtomicInteger value, int candidate)
+	{
+		int current = value.get();
+		while (candidate < current && ! value.compareAndSet(current, candidate))
+			current = value.get();
+	}
+	
+	/**
+	**	A node near the top of the search tree, with the steps that lead to it from the original board.
+	**/
+	private static class Subtree
+	{
+		final Board board;
+		final int[] path;
+		final int h;
+		
+		Subtree(Board board, int[] path, int h)
+		{
+			this.board = board;
+			this.path = path;
+			this.h = h;
+		}
+	}
+	
+	/**
+	**	Searches a range of subtrees, splitting the range in half until only one subtree is left.
+	**/
+	private class SearchTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private final ArrayList<Subtree> subtrees;
+		private final int from, to, bound;
+		private final AtomicInteger nextBound;
+		private final AtomicBoolean stop;
+		private final AtomicReference<int[]> found;
+		
+		SearchTask(ArrayList<Subtree> subtrees, int from, int to, int bound, AtomicInteger nextBound, AtomicBoolean stop, AtomicReference<int[]> found)
+		{
+			this.subtrees = subtrees;
+			this.from = from;
+			this.to = to;
+			this.bound = bound;
+			this.nextBound = nextBound;
+			this.stop = stop;
+			this.found = found;
+		}
+		
+		protected void compute()
+		{
+			if (stop.get())
+				return;
+			if (to - from > 1)
+			{
+				int middle = (from + to) >>> 1;
+				invokeAll(new SearchTask(subtrees, from, middle, bound, nextBound, stop, found),
+					new SearchTask(subtrees, middle, to, bound, nextBound, stop, found));
+				return;
+			}
+			Subtree subtree = subtrees.get(from);
+			Solver worker = workers.get();
+			int result = worker.searchSubtree(subtree.board.toArray(), subtree.path, bound, subtree.h, stop);
+			nodes.addAndGet(worker.getNodesExpanded());
+			if (result == Solver.FOUND)
+			{
+				if (found.compareAndSet(null, worker.getSolution()))
+					stop.set(true);
+			}
+			else
+				lowerTo(nextBound, result);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,347 @@
+package bitzawolf.solver;
+
+import bitzawolf.Board;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+**	A table of the fewest moves of a group of tiles (the pattern) needed to bring them home from every arrangement they
+**		can be in, ignoring all other tiles. Only moves of pattern tiles are counted, so the tables of patterns that share
+**		no tiles can be added together and still never overestimate, see <code>PatternDatabaseHeuristic</code>.
+**
+**	<p>Arrangements are numbered by the slots of the pattern tiles, in pattern order, as a number with a falling base:
+**		the first tile picks one of <code>n</code> slots, the second one of the <code>n - 1</code> left, and so on. Each
+**		entry is one byte.</p>
+**
+**	<p>Tables are built once, saved, and then loaded by memory-mapping the file, so loading takes no time and the table
+**		stays off the heap. File layout, big-endian: the int <code>MAGIC</code>, the int <code>VERSION</code>, columns,
+**		rows, the number of pattern tiles and the tiles themselves as ints, then one byte per arrangement.</p>
+**/
+public class PatternDatabase
+{
+	public static final int MAGIC = 0x53504442; // "SPDB"
+	public static final int VERSION = 1;
+	
+	private static final byte UNKNOWN = (byte) 0xFF;
+	
+	private final int columns, rows, size;
+	private final int[] pattern;
+	private final ByteBuffer table;
+	
+	private PatternDatabase(int columns, int rows, int[] pattern, ByteBuffer table)
+	{
+		this.columns = columns;
+		this.rows = rows;
+		this.pattern = pattern;
+		this.table = table;
+		size = columns * rows;
+	}
+	
+	public int getColumns()
+	{
+		return columns;
+	}
+	
+	public int getRows()
+	{
+		return rows;
+	}
+	
+	/**
+	**	Returns a copy of the tiles in this pattern.
+	**/
+	public int[] getPattern()
+	{
+		return pattern.clone();
+	}
+	
+	/**
+	**	Returns the number of arrangements, which is also the number of table entries.
+	**/
+	public int getEntryCount()
+	{
+		return table.capacity();
+	}
+	
+	/**
+	**	Returns the fewest moves of pattern tiles needed to bring them home.
+	**	@param slots The slot of every tile on the board.
+	**/
+	public int lookup(int[] slots)
+	{
+		int index = 0;
+		for (int i = 0; i < pattern.length; ++i)
+		{
+			int slot = slots[pattern[i]];
+			int lower = 0;
+			for (int j = 0; j < i; ++j)
+			{
+				if (slots[pattern[j]] < slot)
+					++lower;
+			}
+			index = index * (size - i) + (slot - lower);
+		}
+		return table.get(index) & 0xFF;
+	}
+	
+	/**
+	**	Saves the table to a file that <code>load</code> can map.
+	**/
+	public void save(File file) throws IOException
+	{
+		FileOutputStream fileStream = new FileOutputStream(file);
+		try
+		{
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileStream));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(columns);
+			out.writeInt(rows);
+			out.writeInt(pattern.length);
+			for (int tile : pattern)
+				out.writeInt(tile);
+			out.flush();
+			FileChannel channel = fileStream.getChannel();
+			ByteBuffer entries = table.duplicate();
+			entries.clear();
+			while (entries.hasRemaining())
+				channel.write(entries);
+		}
+		finally
+		{
+			fileStream.close();
+		}
+	}
+	
+	/**
+	**	Memory-maps a table saved by <code>save</code>. Nothing but the header is read until entries are looked up.
+	**	@throws IOException if the file can't be read or isn't a pattern database.
+	**/
+	public static PatternDatabase load(File file) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			mapped.order(ByteOrder.BIG_ENDIAN);
+			if (mapped.remaining() < 20 || mapped.getInt() != MAGIC)
+				throw new IOException(file + " is not a pattern database");
+			int version = mapped.getInt();
+			if (version != VERSION)
+				throw new IOException(file + " has unsupported version " + version);
+			int columns = mapped.getInt();
+			int rows = mapped.getInt();
+			int count = mapped.getInt();
+			int size = columns * rows;
+			if (columns < 2 || rows < 2 || count < 1 || count >= size)
+				throw new IOException(file + " has a bad header");
+			int[] pattern = new int[count];
+			for (int i = 0; i < count; ++i)
+			{
+				pattern[i] = mapped.getInt();
+				if (pattern[i] <= 0 || pattern[i] >= size)
+					throw new IOException(file + " has a bad pattern tile " + pattern[i]);
+			}
+			if (mapped.remaining() != arrangements(size, count))
+				throw new IOException(file + " is truncated");
+			return new PatternDatabase(columns, rows, pattern, mapped.slice());
+		}
+		finally
+		{
+			raf.close(); // the mapping stays valid after the channel is closed
+		}
+	}
+	
+	/**
+	**	Returns the number of ways <code>count</code> tiles can be placed in <code>size</code> slots.
+	**	@throws IllegalArgumentException if that is too many to fit in a table.
+	**/
+	public static int arrangements(int size, int count)
+	{
+		long total = 1;
+		for (int i = 0; i < count; ++i)
+			total *= (size - i);
+		if (total > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("A pattern of " + count + " tiles on " + size + " slots needs " + total + " entries, too many for one table");
+		return (int) total;
+	}
+	
+	/**
+	**	Builds the table for a pattern with a breadth-first search backwards from the solved board. The search runs over
+	**		arrangements of the pattern tiles plus the empty space, but since moving the empty space among the other tiles
+	**		costs nothing, every state is expanded to the whole area the empty space can reach before any pattern tile is moved.
+	**		Memory use is about one bit per pattern-and-empty-space state plus the search frontier.
+	**/
+	public static PatternDatabase build(int columns, int rows, int[] pattern)
+	{
+		int size = columns * rows;
+		if (size > 64)
+			throw new IllegalArgumentException("Pattern databases are limited to 64 slots: " + columns + " x " + rows);
+		int[] tiles = pattern.clone();
+		for (int tile : tiles)
+		{
+			if (tile <= 0 || tile >= size)
+				throw new IllegalArgumentException("Bad pattern tile " + tile + " for a " + columns + " x " + rows + " board");
+		}
+		int entries = arrangements(size, tiles.length);
+		byte[] table = new byte[entries];
+		Arrays.fill(table, UNKNOWN);
+		long[] visited = new long[(int) (((long) entries * size + 63) / 64)];
+		
+		Board layout = new Board(columns, rows);
+		int[] neighbors = new int[size * 4];
+		for (int slot = 0; slot < size; ++slot)
+		{
+			for (int direction = 0; direction < 4; ++direction)
+				neighbors[slot * 4 + direction] = layout.getNeighbor(slot, direction);
+		}
+		
+		int[] positions = new int[tiles.length];
+		int[] area = new int[size];
+		LongList current = new LongList();
+		LongList next = new LongList();
+		current.add((long) rank(tiles, size) * size + Board.BLANK); // a tile's number is its home slot
+		for (int cost = 0; current.size() != 0; ++cost)
+		{
+			if (cost >= 0xFF)
+				throw new IllegalStateException("Pattern costs don't fit in a byte");
+			for (int i = 0; i < current.size(); ++i)
+			{
+				long bit = current.get(i);
+				int index = (int) (bit / size);
+				int blank = (int) (bit % size);
+				if ((visited[(int) (bit >>> 6)] & (1L << bit)) != 0)
+					continue;
+				unrank(index, size, positions);
+				long occupied = 0;
+				for (int position : positions)
+					occupied |= 1L << position;
+				if (table[index] == UNKNOWN)
+					table[index] = (byte) cost;
+				
+				// Flood the area the empty space can reach without moving pattern tiles.
+				int areaSize = 0;
+				area[areaSize++] = blank;
+				visited[(int) (bit >>> 6)] |= 1L << bit;
+				for (int a = 0; a < areaSize; ++a)
+				{
+					int slot = area[a];
+					for (int direction = 0; direction < 4; ++direction)
+					{
+						int neighbor = neighbors[slot * 4 + direction];
+						if (neighbor == -1)
+							continue;
+						if ((occupied & (1L << neighbor)) != 0)
+						{
+							// Moving this pattern tile into the empty space costs one move.
+							int p = 0;
+							while (positions[p] != neighbor)
+								++p;
+							positions[p] = slot;
+							int moved = rank(positions, size);
+							positions[p] = neighbor;
+							long movedBit = (long) moved * size + neighbor;
+							if ((visited[(int) (movedBit >>> 6)] & (1L << movedBit)) == 0)
+								next.add(movedBit);
+							continue;
+						}
+						long neighborBit = (long) index * size + neighbor;
+						if ((visited[(int) (neighborBit >>> 6)] & (1L << neighborBit)) == 0)
+						{
+							visited[(int) (neighborBit >>> 6)] |= 1L << neighborBit;
+							area[areaSize++] = neighbor;
+						}
+					}
+				}
+			}
+			LongList temp = current;
+			current = next;
+			next = temp;
+			next.clear();
+		}
+		return new PatternDatabase(columns, rows, tiles, ByteBuffer.wrap(table));
+	}
+	
+	private static int rank(int[] positions, int size)
+	{
+		int index = 0;
+		for (int i = 0; i < positions.length; ++i)
+		{
+			int lower = 0;
+			for (int j = 0; j < i; ++j)
+			{
+				if (positions[j] < positions[i])
+					++lower;
+			}
+			index = index * (size - i) + (positions[i] - lower);
+		}
+		return index;
+	}
+	
+	private static void unrank(int index, int size, int[] positions)
+	{
+		int count = positions.length;
+		for (int i = count - 1; i >= 0; --i)
+		{
+			int base = size - i;
+			positions[i] = index % base;
+			index /= base;
+		}
+		// Each digit counts the free slots skipped, so turn it back into a slot by stepping over the slots already taken.
+		long taken = 0;
+		for (int i = 0; i < count; ++i)
+		{
+			int digit = positions[i];
+			int slot = 0;
+			while (true)
+			{
+				if ((taken & (1L << slot)) == 0)
+				{
+					if (digit == 0)
+						break;
+					--digit;
+				}
+				++slot;
+			}
+			positions[i] = slot;
+			taken |= 1L << slot;
+		}
+	}
+	
+	/**
+	**	A growable list of longs, to keep the search frontier from being boxed.
+	**/
+	private static class LongList
+	{
+		private long[] values = new long[1024];
+		private int size = 0;
+		
+		public void add(long value)
+		{
+			if (size == values.length)
+				values = Arrays.copyOf(values, size * 2);
+			values[size++] = value;
+		}
+		
+		public long get(int i)
+		{
+			return values[i];
+		}
+		
+		public int size()
+		{
+			return size;
+		}
+		
+		public void clear()
+		{
+			size = 0;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,61 @@
+package bitzawolf.solver;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+
+/**
+**	Command line tool that builds and saves the default pattern databases for a board size, one pattern per thread.
+**
+**	<p>Usage: <code>java -Xmx2g -cp "Slidy Puzzles.jar" bitzawolf.solver.PatternDatabaseGenerator columns rows
+**		directory [threads]</code>. Point the game at the directory with <code>-Dslidypuzzles.pdb=directory</code>.</p>
+**/
+public class PatternDatabaseGenerator
+{
+	public static void main(String[] args) throws Exception
+	{
+		if (args.length < 3)
+		{
+			System.out.println("Usage: PatternDatabaseGenerator columns rows directory [threads]");
+			System.exit(1);
+		}
+		final int columns = Integer.parseInt(args[0]);
+		final int rows = Integer.parseInt(args[1]);
+		final File directory = new File(args[2]);
+		int[][] partition = PatternDatabaseHeuristic.getDefaultPartition(columns, rows);
+		int threads = (args.length > 3) ? Integer.parseInt(args[3]) : Math.min(partition.length, Runtime.getRuntime().availableProcessors());
+		if (! directory.isDirectory() && ! directory.mkdirs())
+			throw new IOException("Can't create " + directory);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		ArrayList<Future<?>> results = new ArrayList<Future<?>>();
+		for (int i = 0; i < partition.length; ++i)
+		{
+			final int index = i;
+			final int[] pattern = partition[i];
+			results.add(executor.submit(new Callable<Void>()
+			{
+				public Void call() throws IOException
+				{
+					long start = System.currentTimeMillis();
+					PatternDatabase database = PatternDatabase.build(columns, rows, pattern);
+					File file = new File(directory, PatternDatabaseHeuristic.getFileName(columns, rows, index));
+					database.save(file);
+					System.out.println("Built " + file + " (" + database.getEntryCount() + " entries) in " + (System.currentTimeMillis() - start) + " ms");
+					return null;
+				}
+			}));
+		}
+		executor.shutdown();
+		try
+		{
+			for (Future<?> result : results)
+				result.get();
+		}
+		catch (ExecutionException ee)
+		{
+			executor.shutdownNow();
+			throw new IOException("Building a pattern database failed", ee.getCause());
+		}
+	}
+}
\ No newline at end of file
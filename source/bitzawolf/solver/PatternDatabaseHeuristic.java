@@ -0,0 +1,147 @@
+package bitzawolf.solver;
+
+import java.io.*;
+import java.util.ArrayList;
+
+/**
+**	Estimates the moves left as the sum of several pattern databases whose patterns share no tiles and together cover
+**		every tile. Because each table only counts moves of its own tiles, the sum never overestimates, and it is usually
+**		far closer than Manhattan distance, which cuts the nodes a search expands by orders of magnitude.
+**
+**	<p>After a step only the table holding the moved tile can change, so an update is two lookups in one table.</p>
+**/
+public class PatternDatabaseHeuristic implements Heuristic
+{
+	/**System property naming the directory the game looks in for saved pattern databases.**/
+	public static final String DIRECTORY_PROPERTY = "slidypuzzles.pdb";
+	
+	private final PatternDatabase[] databases;
+	private final PatternDatabase[] databaseOf; // tile -> database holding it
+	
+	/**
+	**	@throws IllegalArgumentException if the databases are for different board sizes, share tiles, or miss a tile.
+	**/
+	public PatternDatabaseHeuristic(PatternDatabase... databases)
+	{
+		if (databases.length == 0)
+			throw new IllegalArgumentException("No pattern databases given");
+		int columns = databases[0].getColumns();
+		int rows = databases[0].getRows();
+		this.databases = databases.clone();
+		databaseOf = new PatternDatabase[columns * rows];
+		for (PatternDatabase database : databases)
+		{
+			if (database.getColumns() != columns || database.getRows() != rows)
+				throw new IllegalArgumentException("Pattern databases are for different board sizes");
+			for (int tile : database.getPattern())
+			{
+				if (databaseOf[tile] != null)
+					throw new IllegalArgumentException("Tile " + tile + " is in more than one pattern");
+				databaseOf[tile] = database;
+			}
+		}
+		for (int tile = 1; tile < databaseOf.length; ++tile)
+		{
+			if (databaseOf[tile] == null)
+				throw new IllegalArgumentException("Tile " + tile + " isn't in any pattern");
+		}
+	}
+	
+	public int estimate(int[] tiles, int[] slots)
+	{
+		int h = 0;
+		for (PatternDatabase database : databases)
+			h += database.lookup(slots);
+		return h;
+	}
+	
+	public int update(int[] tiles, int[] slots, int tile, int from, int to, int h)
+	{
+		PatternDatabase database = databaseOf[tile];
+		int after = database.lookup(slots);
+		slots[tile] = from;
+		int before = database.lookup(slots);
+		slots[tile] = to;
+		return h + after - before;
+	}
+	
+	/**
+	**	Returns the tiles of each pattern the generator builds by default. 4 x 4 boards use the usual 6-6-3 split into
+	**		blocks; other boards are split row by row into patterns of at most 5 tiles (6 for boards of 16 slots or less), which
+	**		keeps every table within a few tens of megabytes.
+	**/
+	public static int[][] getDefaultPartition(int columns, int rows)
+	{
+		if (columns == 4 && rows == 4)
+			return new int[][] {{1, 4, 5, 8, 9, 12}, {2, 3, 6, 7, 10, 11}, {13, 14, 15}};
+		int size = columns * rows;
+		int maxTiles = (size <= 16) ? 6 : 5;
+		ArrayList<int[]> patterns = new ArrayList<int[]>();
+		int tile = 1;
+		while (tile < size)
+		{
+			int count = Math.min(maxTiles, size - tile);
+			int[] pattern = new int[count];
+			for (int i = 0; i < count; ++i)
+				pattern[i] = tile++;
+			patterns.add(pattern);
+		}
+		return patterns.toArray(new int[patterns.size()][]);
+	}
+	
+	/**
+	**	Returns the name of the file the generator saves a pattern to.
+	**/
+	public static String getFileName(int columns, int rows, int patternIndex)
+	{
+		return "pdb-" + columns + "x" + rows + "-" + patternIndex + ".bin";
+	}
+	
+	/**
+	**	Maps every saved pattern for the board size from the directory.
+	**	@return The heuristic, or null if there are no saved patterns for this size.
+	**	@throws IOException if a file is damaged or the patterns don't form a partition of the tiles.
+	**/
+	public static PatternDatabaseHeuristic load(File directory, int columns, int rows) throws IOException
+	{
+		ArrayList<PatternDatabase> databases = new ArrayList<PatternDatabase>();
+		for (int i = 0; ; ++i)
+		{
+			File file = new File(directory, getFileName(columns, rows, i));
+			if (! file.isFile())
+				break;
+			databases.add(PatternDatabase.load(file));
+		}
+		if (databases.isEmpty())
+			return null;
+		try
+		{
+			return new PatternDatabaseHeuristic(databases.toArray(new PatternDatabase[databases.size()]));
+		}
+		catch (IllegalArgumentException iae)
+		{
+			throw new IOException("Pattern databases in " + directory + " don't fit together: " + iae.getMessage());
+		}
+	}
+	
+	/**
+	**	Loads the saved patterns for the board size from the directory named by the <code>DIRECTORY_PROPERTY</code> system
+	**		property, if there are any.
+	**	@return The heuristic, or null if the property isn't set or nothing usable was saved.
+	**/
+	public static PatternDatabaseHeuristic find(int columns, int rows)
+	{
+		String directory = System.getProperty(DIRECTORY_PROPERTY);
+		if (directory == null)
+			return null;
+		try
+		{
+			return load(new File(directory), columns, rows);
+		}
+		catch (IOException ioe)
+		{
+			System.out.println("Ignoring pattern databases: " + ioe.getMessage());
+			return null;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,198 @@
+package bitzawolf.solver;
+
+import bitzawolf.Board;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+**	Finds the shortest solution for a board with iterative-deepening A*: repeated depth-first searches that give up on a
+**		path as soon as its length plus the heuristic's estimate goes over a bound, raising the bound to the smallest
+**		value that was cut off until a solution turns up. Since the estimate never overestimates, the first solution found
+**		is optimal.
+**
+**	<p>The search works on its own copy of the board as plain arrays, updating the estimate after every step instead of
+**		recalculating it, and allocates nothing once it is running. A Solver can be reused for any number of boards of its
+**		size, but only by one thread at a time.</p>
+**
+**	<p>Solutions are returned as the directions the empty space steps in, see <code>Board.UP</code> and friends.</p>
+**/
+public class Solver
+{
+	static final int FOUND = -1;
+	private static final int NOT_FOUND = Integer.MAX_VALUE;
+	
+	private final int columns, rows, size;
+	private final int[] tiles, slots;
+	private final int[] neighbors; // slot * 4 + direction -> slot, or -1
+	private final Heuristic heuristic;
+	private int[] path;
+	private int pathLength;
+	private long nodes, nodeLimit;
+	private AtomicBoolean stop; // set by a parallel search once another subtree has found a solution
+	
+	/**
+	**	Creates a solver for boards of the given size, using Manhattan distance plus linear conflicts as the estimate.
+	**/
+	public Solver(int columns, int rows)
+	{
+		this(columns, rows, new ManhattanHeuristic(columns, rows));
+	}
+	
+	/**
+	**	Creates a solver for boards of the given size using any estimate. Solutions are only optimal if the estimate
+	**		never overestimates.
+	**/
+	public Solver(int columns, int rows, Heuristic heuristic)
+	{
+		this.columns = columns;
+		this.rows = rows;
+		this.heuristic = heuristic;
+		size = columns * rows;
+		tiles = new int[size];
+		slots = new int[size];
+		Board layout = new Board(columns, rows);
+		neighbors = new int[size * 4];
+		for (int slot = 0; slot < size; ++slot)
+		{
+			for (int direction = 0; direction < 4; ++direction)
+				neighbors[slot * 4 + direction] = layout.getNeighbor(slot, direction);
+		}
+		path = new int[size * 4];
+		nodeLimit = Long.MAX_VALUE;
+	}
+	
+	/**
+	**	Limits how many nodes a single call to <code>solve</code> may expand before giving up. Unlimited by default.
+	**/
+	public void setNodeLimit(long limit)
+	{
+		nodeLimit = (limit <= 0) ? Long.MAX_VALUE : limit;
+	}
+	
+	/**
+	**	Returns the number of nodes expanded by the last call to <code>solve</code>.
+	**/
+	public long getNodesExpanded()
+	{
+		return nodes;
+	}
+	
+	/**
+	**	Finds an optimal solution for the board.
+	**	@return The directions the empty space steps in, in order. The array is empty if the board is already solved, and
+	**		null if the board can't be solved or the node limit ran out first.
+	**/
+	public int[] solve(Board board)
+	{
+		if (board.getColumns() != columns || board.getRows() != rows)
+			throw new IllegalArgumentException("Solver is for " + columns + " x " + rows + " boards, not " + board.getColumns() + " x " + board.getRows());
+		nodes = 0;
+		if (! board.isSolvable())
+			return null;
+		for (int slot = 0; slot < size; ++slot)
+		{
+			tiles[slot] = board.getTile(slot);
+			slots[tiles[slot]] = slot;
+		}
+		int blank = slots[Board.BLANK];
+		int h = heuristic.estimate(tiles, slots);
+		int bound = h;
+		while (true)
+		{
+			if (bound >= path.length)
+				path = new int[bound * 2];
+			int result = search(blank, 0, bound, h, -1);
+			if (result == FOUND)
+				return getSolution();
+			if (result == NOT_FOUND || nodes >= nodeLimit)
+				return null;
+			bound = result;
+		}
+	}
+	
+	/**
+	**	Searches one subtree for <code>ParallelSolver</code>, giving up early once <code>stop</code> is set.
+	**	@param start The tile in each slot at the root of the subtree.
+	**	@param prefix The steps from the original board to the root of the subtree.
+	**	@param h The estimate for the root of the subtree.
+	**	@return FOUND if a solution was found, see <code>getSolution</code>, otherwise the smallest estimate of a path that
+	**		went over the bound, or <code>Integer.MAX_VALUE</code> if there was none or the search was stopped.
+	**/
+	int searchSubtree(int[] start, int[] prefix, int bound, int h, AtomicBoolean stop)
+	{
+		for (int slot = 0; slot < size; ++slot)
+		{
+			tiles[slot] = start[slot];
+			slots[tiles[slot]] = slot;
+		}
+		if (bound >= path.length)
+			path = new int[bound * 2];
+		System.arraycopy(prefix, 0, path, 0, prefix.length);
+		int previous = (prefix.length == 0) ? -1 : prefix[prefix.length - 1];
+		nodes = 0;
+		this.stop = stop;
+		try
+		{
+			return search(slots[Board.BLANK], prefix.length, bound, h, previous);
+		}
+		finally
+		{
+			this.stop = null;
+		}
+	}
+	
+	/**
+	**	Returns the solution found by the last successful <code>searchSubtree</code>.
+	**/
+	int[] getSolution()
+	{
+		int[] solution = new int[pathLength];
+		System.arraycopy(path, 0, solution, 0, pathLength);
+		return solution;
+	}
+	
+	/**
+	**	Searches every path from the current board that stays within the bound.
+	**	@return FOUND if a solution was found, otherwise the smallest estimate of a path that went over the bound.
+	**/
+	private int search(int blank, int depth, int bound, int h, int previous)
+	{
+		int f = depth + h;
+		if (f > bound)
+			return f;
+		if (h == 0)
+		{
+			pathLength = depth;
+			return FOUND;
+		}
+		if (++nodes >= nodeLimit)
+			return NOT_FOUND;
+		if ((nodes & 0xFFF) == 0 && stop != null && stop.get())
+			return NOT_FOUND;
+		int min = NOT_FOUND;
+		for (int direction = 0; direction < 4; ++direction)
+		{
+			if (direction == (previous ^ 2))
+				continue;
+			int slot = neighbors[blank * 4 + direction];
+			if (slot == -1)
+				continue;
+			int tile = tiles[slot];
+			tiles[blank] = tile;
+			tiles[slot] = Board.BLANK;
+			slots[tile] = blank;
+			slots[Board.BLANK] = slot;
+			path[depth] = direction;
+			int result = search(slot, depth + 1, bound, heuristic.update(tiles, slots, tile, slot, blank, h), direction);
+			tiles[slot] = tile;
+			tiles[blank] = Board.BLANK;
+			slots[tile] = slot;
+			slots[Board.BLANK] = blank;
+			if (result == FOUND)
+				return FOUND;
+			if (result < min)
+				min = result;
+		}
+		return min;
+	}
+}
\ No newline at end of file
@@ -1,10 +1,14 @@
 package convcomm.engine.audio;
 
+import convcomm.engine.util.Monitoring;
 import convcomm.engine.util.ThreadPool;
 
 import javax.sound.sampled.*;
 import java.io.*;
 import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.ObjectName;
 
 public class SoundManager extends ThreadPool
 {
@@ -17,7 +21,11 @@ public class SoundManager extends ThreadPool
 	private ThreadLocal<SourceDataLine> localLine;
 	private ThreadLocal<byte[]> localBuffer;
 	private Object pauseLock, stopLock;
-	private boolean paused, stopped;
+	private volatile boolean paused;
+	private boolean stopped;
+	private final AtomicInteger activeVoices;
+	private final AtomicLong underruns;
+	private ObjectName monitorName;
 	
 	public static boolean hasAudioMixer()
 	{
@@ -33,6 +41,9 @@ public class SoundManager extends ThreadPool
 	public SoundManager(int maxSimultaneousSounds)
 	{
 		super(Math.min(maxSimultaneousSounds, getMaxSimultaneousSounds(FORMAT)));
+		activeVoices = new AtomicInteger();
+		underruns = new AtomicLong();
+		monitorName = Monitoring.register("SoundManager", getName(), new SoundMonitor(this));
 		
 		if (maxSimultaneousSounds == -1)
 			return;
@@ -110,12 +121,35 @@ public class SoundManager extends ThreadPool
 	{
 		cleanUp();
 		super.close();
+		Monitoring.unregister(monitorName);
+		monitorName = null;
 	}
 	
 	public void join()
 	{
 		cleanUp();
 		super.join();
+		Monitoring.unregister(monitorName);
+		monitorName = null;
+	}
+	
+	/**
+	**	Returns the number of sounds playing right now.
+	**/
+	public int getActiveVoices()
+	{
+		return activeVoices.get();
+	}
+	
+	/**
+	**	Returns roughly how many times a playing sound's line ran dry, which is heard as a click or a gap. Java Sound
+	**		doesn't report underruns, so this counts the writes that found the line's buffer already empty. That's a lower
+	**		bound: a line that ran dry and was refilled between two writes isn't counted. Lines left to drain while the
+	**		sounds are paused aren't counted.
+	**/
+	public long getUnderruns()
+	{
+		return underruns.get();
 	}
 	
 	public void reset()
@@ -279,9 +313,11 @@ public class SoundManager extends ThreadPool
 				System.out.println("line = " + line + "\nbuffer = " + buffer);
 				return;
 			}
+			activeVoices.incrementAndGet();
 			try
 			{
 				int bytesRead = 0;
+				boolean written = false;
 				while (bytesRead != -1)
 				{
 					if (pauseable)
@@ -298,6 +334,7 @@ public class SoundManager extends ThreadPool
 								{
 									return;
 								}
+								written = false; // the line drained on purpose while paused
 							}
 						}
 					}
@@ -308,13 +345,22 @@ public class SoundManager extends ThreadPool
 					}
 					bytesRead = stream.read(buffer, 0, buffer.length);
 					if (bytesRead != -1)
+					{
+						if (written && line.available() >= line.getBufferSize())
+							underruns.incrementAndGet();
 						line.write(buffer, 0, bytesRead);
+						written = true;
+					}
 				}
 			}
 			catch (IOException ioe)
 			{
 				ioe.printStackTrace();
 			}
+			finally
+			{
+				activeVoices.decrementAndGet();
+			}
 		}
 	}
 	
@@ -0,0 +1,32 @@
+package convcomm.engine.audio;
+
+import convcomm.engine.util.ThreadPoolMonitor;
+
+/**
+**	Publishes a <code>SoundManager</code>'s voices and underruns along with its thread pool numbers.
+**/
+public class SoundMonitor extends ThreadPoolMonitor implements SoundMonitorMBean
+{
+	private final SoundManager soundManager;
+	
+	public SoundMonitor(SoundManager soundManager)
+	{
+		super(soundManager);
+		this.soundManager = soundManager;
+	}
+	
+	public int getActiveVoices()
+	{
+		return soundManager.getActiveVoices();
+	}
+	
+	public long getUnderruns()
+	{
+		return soundManager.getUnderruns();
+	}
+	
+	public boolean isPaused()
+	{
+		return soundManager.isPaused();
+	}
+}
\ No newline at end of file
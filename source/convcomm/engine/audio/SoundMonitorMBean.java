@@ -0,0 +1,15 @@
+package convcomm.engine.audio;
+
+import convcomm.engine.util.ThreadPoolMonitorMBean;
+
+/**
+**	What a <code>SoundManager</code> publishes over JMX, on top of what any thread pool does.
+**/
+public interface SoundMonitorMBean extends ThreadPoolMonitorMBean
+{
+	/**Sounds playing right now.**/
+	public int getActiveVoices();
+	/**Writes that found a playing sound's line already empty, an approximate count of underruns.**/
+	public long getUnderruns();
+	public boolean isPaused();
+}
\ No newline at end of file
@@ -0,0 +1,177 @@
+package convcomm.engine.graphics;
+
+import java.awt.Rectangle;
+
+/**
+**	Keeps track of the parts of the screen that changed since the last frame, so only those need to be drawn and shown.
+**		Regions that touch or overlap are merged as they're added, which keeps a sliding row of tiles down to one
+**		rectangle. When there are more separate regions than <code>MAX_REGIONS</code>, they're all merged into the one
+**		rectangle around them.
+**
+**	<p>Everything is clipped to the screen's bounds, and the rectangles are reused from frame to frame so marking
+**		regions never allocates.</p>
+**/
+public class DirtyRegions
+{
+	public static final int MAX_REGIONS = 8;
+	
+	private final Rectangle bounds;
+	private final Rectangle[] regions;
+	private int count;
+	
+	public DirtyRegions(int width, int height)
+	{
+		bounds = new Rectangle(0, 0, width, height);
+		regions = new Rectangle[MAX_REGIONS];
+		for (int i = 0; i < MAX_REGIONS; ++i)
+			regions[i] = new Rectangle();
+		count = 0;
+	}
+	
+	/**
+	**	Changes the size of the screen being tracked and marks all of it.
+	**/
+	public void setSize(int width, int height)
+	{
+		bounds.setSize(width, height);
+		addAll();
+	}
+	
+	public int getWidth()
+	{
+		return bounds.width;
+	}
+	
+	public int getHeight()
+	{
+		return bounds.height;
+	}
+	
+	/**
+	**	Marks a rectangle of the screen as changed.
+	**/
+	public void add(int x, int y, int width, int height)
+	{
+		// Clip to the screen.
+		if (x < 0)
+		{
+			width += x;
+			x = 0;
+		}
+		if (y < 0)
+		{
+			height += y;
+			y = 0;
+		}
+		if (x + width > bounds.width)
+			width = bounds.width - x;
+		if (y + height > bounds.height)
+			height = bounds.height - y;
+		if (width <= 0 || height <= 0)
+			return;
+		
+		for (int i = 0; i < count; ++i)
+		{
+			Rectangle r = regions[i];
+			if (x <= r.x + r.width && r.x <= x + width && y <= r.y + r.height && r.y <= y + height)
+			{
+				r.add(x, y);
+				r.add(x + width, y + height);
+				mergeInto(i);
+				return;
+			}
+		}
+		if (count == MAX_REGIONS)
+		{
+			collapse();
+			regions[0].add(x, y);
+			regions[0].add(x + width, y + height);
+			return;
+		}
+		regions[count++].setBounds(x, y, width, height);
+	}
+	
+	public void add(Rectangle r)
+	{
+		add(r.x, r.y, r.width, r.height);
+	}
+	
+	/**
+	**	Marks the whole screen as changed.
+	**/
+	public void addAll()
+	{
+		regions[0].setBounds(bounds);
+		count = (bounds.isEmpty()) ? 0 : 1;
+	}
+	
+	public boolean isEmpty()
+	{
+		return count == 0;
+	}
+	
+	/**
+	**	Returns the number of separate regions marked.
+	**/
+	public int size()
+	{
+		return count;
+	}
+	
+	/**
+	**	Returns one of the marked regions. The rectangle is reused, so don't keep it or change it.
+	**/
+	public Rectangle get(int i)
+	{
+		return regions[i];
+	}
+	
+	/**
+	**	Forgets every region, usually once they've been drawn and shown.
+	**/
+	public void clear()
+	{
+		count = 0;
+	}
+	
+	/**
+	**	Merges every other region that now touches the region at <code>index</code> into it.
+	**/
+	private void mergeInto(int index)
+	{
+		Rectangle grown = regions[index];
+		boolean merged = true;
+		while (merged)
+		{
+			merged = false;
+			for (int i = 0; i < count; ++i)
+			{
+				Rectangle r = regions[i];
+				if (i == index || grown.x > r.x + r.width || r.x > grown.x + grown.width || grown.y > r.y + r.height || r.y > grown.y + grown.height)
+					continue;
+				grown.add(r);
+				removeAt(i);
+				if (index == count) // the grown region was the last one, and has been moved into the gap
+					index = i;
+				merged = true;
+				break;
+			}
+		}
+	}
+	
+	private void removeAt(int i)
+	{
+		--count;
+		Rectangle removed = regions[i];
+		regions[i] = regions[count];
+		regions[count] = removed;
+	}
+	
+	private void collapse()
+	{
+		Rectangle all = regions[0];
+		for (int i = 1; i < count; ++i)
+			all.add(regions[i]);
+		count = 1;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,65 @@
+package convcomm.engine.graphics;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+
+/**
+**	Remembers the settings of a <code>Graphics2D</code> so they can be put back, for a Graphics kept from frame to frame
+**		instead of made new for each one. Restoring sets the paint, color, background, font, composite, stroke, transform,
+**		clip and every standard rendering hint back to how they were when the state was taken, so nothing a loop leaves set
+**		carries over into the next frame. Nothing is allocated restoring.
+**/
+public class GraphicsState
+{
+	private static final RenderingHints.Key[] KEYS = {RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.KEY_ANTIALIASING,
+		RenderingHints.KEY_COLOR_RENDERING, RenderingHints.KEY_DITHERING, RenderingHints.KEY_FRACTIONALMETRICS,
+		RenderingHints.KEY_INTERPOLATION, RenderingHints.KEY_RENDERING, RenderingHints.KEY_STROKE_CONTROL,
+		RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.KEY_TEXT_LCD_CONTRAST};
+	
+	private final Paint paint;
+	private final Color color, background;
+	private final Font font;
+	private final Composite composite;
+	private final Stroke stroke;
+	private final AffineTransform transform;
+	private final Shape clip;
+	private final Object[] hints;
+	
+	/**
+	**	Takes the Graphics' current settings.
+	**/
+	public GraphicsState(Graphics2D g)
+	{
+		color = g.getColor();
+		paint = g.getPaint();
+		background = g.getBackground();
+		font = g.getFont();
+		composite = g.getComposite();
+		stroke = g.getStroke();
+		transform = g.getTransform();
+		clip = g.getClip();
+		hints = new Object[KEYS.length];
+		for (int i = 0; i < KEYS.length; ++i)
+			hints[i] = g.getRenderingHint(KEYS[i]);
+	}
+	
+	/**
+	**	Puts the Graphics' settings back to how they were when this state was taken.
+	**/
+	public void restore(Graphics2D g)
+	{
+		g.setTransform(transform); // first, since the clip is set in the transformed space
+		g.setColor(color);
+		g.setPaint(paint);
+		g.setBackground(background);
+		g.setFont(font);
+		g.setComposite(composite);
+		g.setStroke(stroke);
+		g.setClip(clip);
+		for (int i = 0; i < KEYS.length; ++i)
+		{
+			if (hints[i] != null)
+				g.setRenderingHint(KEYS[i], hints[i]);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,267 @@
+package convcomm.engine.graphics;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+**	Keeps decoded and scaled images so the same picture isn't decoded or scaled twice, keyed by where the image came
+**		from and the size it was made at. Images are held strongly up to a budget in bytes, least recently used first out;
+**		images pushed out are still held by soft references, so they can come back until the garbage collector needs the
+**		memory.
+**
+**	<p>An image from a file is dropped when the file's modification time changes. Cached images are shared, so they must
+**		never be drawn into or have their pixels changed.</p>
+**
+**	<p>The counts and sizes are read without taking the cache's lock, so monitoring never waits on a get or a put.</p>
+**
+**	<p>Use <code>getShared()</code> for the cache the whole game shares.</p>
+**/
+public class ImageCache
+{
+	/**The width and height to cache an image at as it was decoded, before any scaling.**/
+	public static final int ORIGINAL = 0;
+	
+	private static ImageCache shared;
+	
+	private final long maxBytes;
+	private final LinkedHashMap<Key, Entry> entries; // most recently used last
+	private final HashMap<Key, SoftReference<Entry>> evicted;
+	private final AtomicLong bytes; // only changed holding the lock
+	private final AtomicLong hits, softHits, misses, evictions;
+	private volatile int size; // entries.size(), for reading without the lock
+	
+	/**
+	**	@param maxBytes How many bytes of pixels to hold strongly.
+	**/
+	public ImageCache(long maxBytes)
+	{
+		if (maxBytes < 0)
+			throw new IllegalArgumentException("Negative budget " + maxBytes);
+		this.maxBytes = maxBytes;
+		entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+		evicted = new HashMap<Key, SoftReference<Entry>>();
+		bytes = new AtomicLong();
+		hits = new AtomicLong();
+		softHits = new AtomicLong();
+		misses = new AtomicLong();
+		evictions = new AtomicLong();
+		size = 0;
+	}
+	
+	/**
+	**	Returns the cache shared by the whole game, which holds up to an eighth of the heap or 256 MB, whichever is less.
+	**/
+	public static synchronized ImageCache getShared()
+	{
+		if (shared == null)
+			shared = new ImageCache(Math.min(Runtime.getRuntime().maxMemory() / 8, 256L << 20));
+		return shared;
+	}
+	
+	/**
+	**	Returns the image cached for a source at a size, or null if there isn't one.
+	**	@param source Where the image came from, as a file path or URL.
+	**/
+	public BufferedImage get(String source, int width, int height)
+	{
+		long modified = lastModified(source); // before locking, so no other thread waits on the disk
+		Key key = new Key(source, width, height);
+		synchronized (this)
+		{
+			Entry entry = entries.get(key);
+			if (entry == null)
+			{
+				SoftReference<Entry> reference = evicted.remove(key);
+				entry = (reference == null) ? null : reference.get();
+				if (entry != null && entry.modified == modified)
+				{
+					softHits.incrementAndGet();
+					add(key, entry);
+					return entry.image;
+				}
+				misses.incrementAndGet();
+				return null;
+			}
+			if (entry.modified != modified)
+			{
+				entries.remove(key);
+				bytes.addAndGet(-entry.bytes);
+				size = entries.size();
+				misses.incrementAndGet();
+				return null;
+			}
+			hits.incrementAndGet();
+			return entry.image;
+		}
+	}
+	
+	/**
+	**	Caches an image for a source at a size, replacing any already there.
+	**	@param source Where the image came from, as a file path or URL.
+	**/
+	public void put(String source, int width, int height, BufferedImage image)
+	{
+		Key key = new Key(source, width, height);
+		Entry entry = new Entry(image, sizeOf(image), lastModified(source));
+		synchronized (this)
+		{
+			evicted.remove(key);
+			Entry old = entries.remove(key);
+			if (old != null)
+				bytes.addAndGet(-old.bytes);
+			add(key, entry);
+		}
+	}
+	
+	private void add(Key key, Entry entry)
+	{
+		entries.put(key, entry);
+		long held = bytes.addAndGet(entry.bytes);
+		Iterator<Map.Entry<Key, Entry>> oldest = entries.entrySet().iterator();
+		while (held > maxBytes && oldest.hasNext())
+		{
+			Map.Entry<Key, Entry> e = oldest.next();
+			oldest.remove();
+			held = bytes.addAndGet(-e.getValue().bytes);
+			evicted.put(e.getKey(), new SoftReference<Entry>(e.getValue()));
+			evictions.incrementAndGet();
+		}
+		size = entries.size();
+		if (evicted.size() > entries.size() + 64)
+			pruneEvicted();
+	}
+	
+	/**
+	**	Forgets soft references the garbage collector has already cleared.
+	**/
+	private void pruneEvicted()
+	{
+		Iterator<SoftReference<Entry>> references = evicted.values().iterator();
+		while (references.hasNext())
+		{
+			if (references.next().get() == null)
+				references.remove();
+		}
+	}
+	
+	public synchronized void clear()
+	{
+		entries.clear();
+		evicted.clear();
+		bytes.set(0);
+		size = 0;
+	}
+	
+	/**
+	**	Returns the bytes of pixels held strongly.
+	**/
+	public long getBytes()
+	{
+		return bytes.get();
+	}
+	
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+	
+	/**
+	**	Returns the number of images held strongly.
+	**/
+	public int getSize()
+	{
+		return size;
+	}
+	
+	/**
+	**	Returns the number of gets that found an image held strongly.
+	**/
+	public long getHits()
+	{
+		return hits.get();
+	}
+	
+	/**
+	**	Returns the number of gets that found an image only held by a soft reference.
+	**/
+	public long getSoftHits()
+	{
+		return softHits.get();
+	}
+	
+	public long getMisses()
+	{
+		return misses.get();
+	}
+	
+	/**
+	**	Returns the number of images pushed out of the budget into soft references.
+	**/
+	public long getEvictions()
+	{
+		return evictions.get();
+	}
+	
+	/**
+	**	Returns the bytes an image's pixels take.
+	**/
+	public static long sizeOf(BufferedImage image)
+	{
+		DataBuffer buffer = image.getRaster().getDataBuffer();
+		return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+	}
+	
+	/**
+	**	Returns when the file a source names was last changed, or 0 if it isn't a file, like a URL.
+	**/
+	private static long lastModified(String source)
+	{
+		return new File(source).lastModified();
+	}
+	
+	private static class Key
+	{
+		final String source;
+		final int width, height;
+		
+		Key(String source, int width, int height)
+		{
+			this.source = source;
+			this.width = width;
+			this.height = height;
+		}
+		
+		public boolean equals(Object o)
+		{
+			if (! (o instanceof Key))
+				return false;
+			Key other = (Key) o;
+			return width == other.width && height == other.height && source.equals(other.source);
+		}
+		
+		public int hashCode()
+		{
+			return (source.hashCode() * 31 + width) * 31 + height;
+		}
+	}
+	
+	private static class Entry
+	{
+		final BufferedImage image;
+		final long bytes, modified;
+		
+		Entry(BufferedImage image, long bytes, long modified)
+		{
+			this.image = image;
+			this.bytes = bytes;
+			this.modified = modified;
+		}
+	}
+}
\ No newline at end of file
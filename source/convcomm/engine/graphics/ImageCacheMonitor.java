@@ -0,0 +1,56 @@
+package convcomm.engine.graphics;
+
+/**
+**	Publishes how full an <code>ImageCache</code> is and how often it saves a decode or a scale.
+**/
+public class ImageCacheMonitor implements ImageCacheMonitorMBean
+{
+	private final ImageCache cache;
+	
+	public ImageCacheMonitor(ImageCache cache)
+	{
+		this.cache = cache;
+	}
+	
+	public int getSize()
+	{
+		return cache.getSize();
+	}
+	
+	public long getBytes()
+	{
+		return cache.getBytes();
+	}
+	
+	public long getMaxBytes()
+	{
+		return cache.getMaxBytes();
+	}
+	
+	public long getHits()
+	{
+		return cache.getHits();
+	}
+	
+	public long getSoftHits()
+	{
+		return cache.getSoftHits();
+	}
+	
+	public long getMisses()
+	{
+		return cache.getMisses();
+	}
+	
+	public long getEvictions()
+	{
+		return cache.getEvictions();
+	}
+	
+	public double getHitRate()
+	{
+		long hits = cache.getHits() + cache.getSoftHits();
+		long total = hits + cache.getMisses();
+		return (total == 0) ? 0 : (double) hits / total;
+	}
+}
\ No newline at end of file
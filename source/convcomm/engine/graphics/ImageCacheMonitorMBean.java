@@ -0,0 +1,21 @@
+package convcomm.engine.graphics;
+
+/**
+**	What an <code>ImageCache</code> publishes over JMX, see <code>convcomm.engine.util.Monitoring</code>.
+**/
+public interface ImageCacheMonitorMBean
+{
+	/**Images held strongly.**/
+	public int getSize();
+	/**Bytes of pixels held strongly, and the most that will be.**/
+	public long getBytes();
+	public long getMaxBytes();
+	public long getHits();
+	/**Gets that found an image only still held by a soft reference.**/
+	public long getSoftHits();
+	public long getMisses();
+	/**Images pushed out of the budget into soft references.**/
+	public long getEvictions();
+	/**Hits of either kind as a fraction of all gets, or 0 if there haven't been any.**/
+	public double getHitRate();
+}
\ No newline at end of file
@@ -0,0 +1,244 @@
+package convcomm.engine.graphics;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+**	Scales images down straight on their <code>int</code> pixels. The size is worked out first with plain arithmetic,
+**		then the image is halved with a 2 x 2 box filter until it's less than twice the size wanted, and a last bilinear
+**		pass takes it the rest of the way. Halving averages every source pixel, so big photos come out smooth instead of
+**		with the jagged edges of nearest-neighbour scaling, and each pass is split into bands of rows that run as
+**		fork-join tasks on every core.
+**
+**	<p>Images come back as <code>TYPE_INT_RGB</code>. This is a static class and shouldn't be created.</p>
+**/
+public class ImageScaler
+{
+	private static final int BAND_PIXELS = 1 << 16; // destination pixels a pass does on one thread before splitting
+	private static final ForkJoinPool pool = new ForkJoinPool();
+	
+	private ImageScaler() { }
+	
+	/**
+	**	Returns the size an image ends up when it's scaled down to fit inside a box, keeping its aspect ratio. It's
+	**		scaled to the box's width if it's too wide, then to the box's height if it's still too tall, rounding down each
+	**		time, and isn't changed at all if it already fits.
+	**/
+	public static Dimension fitSize(int width, int height, int maxWidth, int maxHeight)
+	{
+		if (width > maxWidth)
+		{
+			height = Math.max(1, (int) ((long) height * maxWidth / width));
+			width = maxWidth;
+		}
+		if (height > maxHeight)
+		{
+			width = Math.max(1, (int) ((long) width * maxHeight / height));
+			height = maxHeight;
+		}
+		return new Dimension(width, height);
+	}
+	
+	/**
+	**	Scales a fully loaded image down to fit inside a box, see <code>fitSize</code>. An image that already fits is
+	**		only converted to <code>TYPE_INT_RGB</code>, and returned as it is if it's already that.
+	**/
+	public static BufferedImage scaleToFit(Image image, int maxWidth, int maxHeight)
+	{
+		Dimension size = fitSize(image.getWidth(null), image.getHeight(null), maxWidth, maxHeight);
+		return scale(image, size.width, size.height);
+	}
+	
+	/**
+	**	Scales a fully loaded image to exactly the given size. Scaling up is one bilinear pass.
+	**/
+	public static BufferedImage scale(Image image, int width, int height)
+	{
+		if (width < 1 || height < 1)
+			throw new IllegalArgumentException("Can't scale to " + width + " x " + height);
+		BufferedImage source = toIntRGB(image);
+		while (source.getWidth() / 2 >= width && source.getHeight() / 2 >= height)
+			source = halve(source);
+		if (source.getWidth() == width && source.getHeight() == height)
+			return source;
+		BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		pool.invoke(new BandTask(new BilinearPass(source, scaled), 0, height));
+		return scaled;
+	}
+	
+	/**
+	**	Returns the image itself if its pixels can be read as one <code>int</code> array, otherwise a copy that can.
+	**/
+	private static BufferedImage toIntRGB(Image image)
+	{
+		if (image instanceof BufferedImage)
+		{
+			BufferedImage buffered = (BufferedImage) image;
+			if (buffered.getType() == BufferedImage.TYPE_INT_RGB && buffered.getRaster().getParent() == null)
+				return buffered;
+		}
+		BufferedImage copy = new BufferedImage(image.getWidth(null), image.getHeight(null), BufferedImage.TYPE_INT_RGB);
+		Graphics g = copy.getGraphics();
+		g.drawImage(image, 0, 0, null);
+		g.dispose();
+		return copy;
+	}
+	
+	private static BufferedImage halve(BufferedImage source)
+	{
+		BufferedImage half = new BufferedImage(source.getWidth() / 2, source.getHeight() / 2, BufferedImage.TYPE_INT_RGB);
+		pool.invoke(new BandTask(new HalvePass(source, half), 0, half.getHeight()));
+		return half;
+	}
+	
+	private static int[] pixels(BufferedImage image)
+	{
+		return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
+	
+	/**
+	**	One scaling step from a source to a destination image, done a band of destination rows at a time.
+	**/
+	private static abstract class Pass
+	{
+		final int[] src, dst;
+		final int srcWidth, srcHeight, dstWidth, dstHeight;
+		
+		Pass(BufferedImage source, BufferedImage destination)
+		{
+			src = pixels(source);
+			dst = pixels(destination);
+			srcWidth = source.getWidth();
+			srcHeight = source.getHeight();
+			dstWidth = destination.getWidth();
+			dstHeight = destination.getHeight();
+		}
+		
+		abstract void rows(int from, int to);
+	}
+	
+	/**
+	**	Averages each 2 x 2 block of source pixels into one. An odd last row or column is dropped.
+	**/
+	private static class HalvePass extends Pass
+	{
+		HalvePass(BufferedImage source, BufferedImage destination)
+		{
+			super(source, destination);
+		}
+		
+		void rows(int from, int to)
+		{
+			for (int y = from; y < to; ++y)
+			{
+				int top = y * 2 * srcWidth;
+				int bottom = top + srcWidth;
+				int out = y * dstWidth;
+				for (int x = 0; x < dstWidth; ++x, top += 2, bottom += 2)
+				{
+					int a = src[top], b = src[top + 1], c = src[bottom], d = src[bottom + 1];
+					int r = ((a >> 16) & 0xFF) + ((b >> 16) & 0xFF) + ((c >> 16) & 0xFF) + ((d >> 16) & 0xFF);
+					int g = ((a >> 8) & 0xFF) + ((b >> 8) & 0xFF) + ((c >> 8) & 0xFF) + ((d >> 8) & 0xFF);
+					int bl = (a & 0xFF) + (b & 0xFF) + (c & 0xFF) + (d & 0xFF);
+					dst[out + x] = (((r + 2) >> 2) << 16) | (((g + 2) >> 2) << 8) | ((bl + 2) >> 2);
+				}
+			}
+		}
+	}
+	
+	/**
+	**	Samples the source between its four nearest pixels for each destination pixel, with 8-bit weights. The columns'
+	**		source positions and weights are worked out once for the whole pass.
+	**/
+	private static class BilinearPass extends Pass
+	{
+		private final int[] left, right, weights;
+		
+		BilinearPass(BufferedImage source, BufferedImage destination)
+		{
+			super(source, destination);
+			left = new int[dstWidth];
+			right = new int[dstWidth];
+			weights = new int[dstWidth];
+			for (int x = 0; x < dstWidth; ++x)
+			{
+				int position = sample(x, srcWidth, dstWidth);
+				left[x] = position >> 8;
+				right[x] = Math.min(left[x] + 1, srcWidth - 1);
+				weights[x] = position & 0xFF;
+			}
+		}
+		
+		/**
+		**	Returns where the centre of a destination pixel falls in the source, in 1/256ths of a pixel.
+		**/
+		private static int sample(int i, int srcSize, int dstSize)
+		{
+			long position = ((2L * i + 1) * srcSize * 256) / (2L * dstSize) - 128;
+			return (int) Math.max(0, Math.min(position, (srcSize - 1) * 256L));
+		}
+		
+		void rows(int from, int to)
+		{
+			for (int y = from; y < to; ++y)
+			{
+				int position = sample(y, srcHeight, dstHeight);
+				int top = (position >> 8) * srcWidth;
+				int bottom = Math.min((position >> 8) + 1, srcHeight - 1) * srcWidth;
+				int fy = position & 0xFF;
+				int out = y * dstWidth;
+				for (int x = 0; x < dstWidth; ++x)
+				{
+					int upper = blend(src[top + left[x]], src[top + right[x]], weights[x]);
+					int lower = blend(src[bottom + left[x]], src[bottom + right[x]], weights[x]);
+					dst[out + x] = blend(upper, lower, fy);
+				}
+			}
+		}
+		
+		/**
+		**	Mixes two RGB pixels, <code>weight</code>/256ths of the way from the first to the second, red and blue at once.
+		**/
+		private static int blend(int a, int b, int weight)
+		{
+			int inverse = 256 - weight;
+			int redBlue = (((a & 0xFF00FF) * inverse + (b & 0xFF00FF) * weight) >>> 8) & 0xFF00FF;
+			int green = (((a & 0xFF00) * inverse + (b & 0xFF00) * weight) >>> 8) & 0xFF00;
+			return redBlue | green;
+		}
+	}
+	
+	/**
+	**	Runs a pass over a range of rows, splitting the range in half until each part is small enough for one thread.
+	**/
+	private static class BandTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private final Pass pass;
+		private final int from, to;
+		
+		BandTask(Pass pass, int from, int to)
+		{
+			this.pass = pass;
+			this.from = from;
+			this.to = to;
+		}
+		
+		protected void compute()
+		{
+			if (to - from > 1 && (long) (to - from) * pass.dstWidth > BAND_PIXELS)
+			{
+				int middle = (from + to) >>> 1;
+				invokeAll(new BandTask(pass, from, middle), new BandTask(pass, middle, to));
+				return;
+			}
+			pass.rows(from, to);
+		}
+	}
+}
\ No newline at end of file
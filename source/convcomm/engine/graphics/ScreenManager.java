@@ -1,6 +1,10 @@
 package convcomm.engine.graphics;
 
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
 import javax.swing.JFrame;
@@ -13,7 +17,17 @@ import javax.swing.RepaintManager;
 **		window with. Once you're done drawing, call <code>update()</code>. Finally, call <code>getGameWindow()</code>
 **		to the the window this class is using to display to. Those are the most important facts you need to know about
 **		this class, everything else supplements setting the game window's size and making it full-screen.
-**	
+**
+**	<p>With dirty rendering on, drawing goes to an image that's kept from frame to frame instead of the window's back
+**		buffer, and <code>update()</code> only copies the regions marked in <code>getDirtyRegions()</code> to the
+**		window. Games that mark what they change can then skip drawing and showing the rest of the screen.</p>
+**
+**	<p>While dirty rendering, the image's graphics and the window's graphics are each made once and kept, so a frame
+**		draws and shows without making any. They're made again whenever the window changes size or mode. The window
+**		ignores the system's repaints, so whenever it's shown, uncovered, moved or resized the whole screen is marked
+**		instead. Changes made from the Swing event thread are only noted there, and applied by the drawing thread at its
+**		next frame.</p>
+**
 **	<p>Based on work by David Brackeen in Developing Games in Java.</p>
 **/
 public class ScreenManager
@@ -21,6 +35,13 @@ public class ScreenManager
 	private boolean AWTEnabled;
 	private GraphicsDevice device;
 	private JFrame gameWindow;
+	private DirtyRegions dirtyRegions;
+	private boolean dirtyRendering;
+	private BufferedImage canvas;
+	private Graphics2D canvasGraphics;
+	private GraphicsState canvasState; // canvasGraphics as it was made
+	private Graphics windowGraphics;
+	private volatile boolean windowChanged; // set from the Swing event thread, applied by the drawing thread
 	
 	/**
 	**	Creates a new game screen using the specified width and height.
@@ -43,6 +64,42 @@ public class ScreenManager
 			setFullScreen(true);
 		
 		frame.createBufferStrategy(2);
+		dirtyRegions = new DirtyRegions(width, height);
+		dirtyRendering = false;
+		canvas = null;
+		canvasGraphics = null;
+		canvasState = null;
+		windowGraphics = null;
+		windowChanged = false;
+		frame.addWindowListener(new WindowAdapter()
+		{
+			public void windowActivated(WindowEvent we)
+			{
+				windowChanged = true;
+			}
+			
+			public void windowDeiconified(WindowEvent we)
+			{
+				windowChanged = true;
+			}
+		});
+		frame.addComponentListener(new ComponentAdapter()
+		{
+			public void componentShown(ComponentEvent ce)
+			{
+				windowChanged = true;
+			}
+			
+			public void componentMoved(ComponentEvent ce)
+			{
+				windowChanged = true;
+			}
+			
+			public void componentResized(ComponentEvent ce)
+			{
+				windowChanged = true;
+			}
+		});
 	}
 	
 	public boolean isAWTEnabled()
@@ -52,13 +109,14 @@ public class ScreenManager
 	
 	public void enableAWTPaint(boolean b)
 	{
+		windowChanged = true;
 		if (AWTEnabled && !b)
 		{
 			gameWindow.setIgnoreRepaint(true);
 			NullRepaintManager.install();
 			gameWindow.getContentPane().setIgnoreRepaint(true);
 			gameWindow.getLayeredPane().setIgnoreRepaint(true);
-			AWTEnabled = false;
+			AWTEnabled = false; // Swing may have painted over anything, so the whole screen's marked next frame
 		}
 		else if (! AWTEnabled && b)
 		{
@@ -97,6 +155,7 @@ public class ScreenManager
 		gameWindow.setSize(width, height);
 		if (device.getFullScreenWindow() == null)
 			gameWindow.setLocationRelativeTo(null);
+		windowChanged = true;
 	}
 	
 	/**
@@ -105,6 +164,7 @@ public class ScreenManager
 	**/
 	public void setFullScreen(boolean setFull)
 	{
+		windowChanged = true;
 		if (setFull && device.getFullScreenWindow() == null)
 		{
 			DisplayMode mode = new DisplayMode(gameWindow.getWidth(), gameWindow.getHeight(), 32, DisplayMode.REFRESH_RATE_UNKNOWN);
@@ -125,13 +185,114 @@ public class ScreenManager
 	}
 	
 	/**
-	**	Obtains the Graphics2D to draw to the screen with.
+	**	Obtains the Graphics2D to draw to the screen with. With dirty rendering on, this draws to the kept image instead.
 	**/
 	public Graphics2D getGraphics()
 	{
+		if (dirtyRendering)
+		{
+			updateCanvas();
+			return canvas.createGraphics();
+		}
 		return (Graphics2D) (gameWindow.getBufferStrategy().getDrawGraphics());
 	}
 	
+	/**
+	**	Returns the Graphics2D of the kept image, for drawing with dirty rendering on. It's the same one every frame, so
+	**		don't dispose of it, and call <code>resetCanvasGraphics()</code> before drawing each region so no setting a loop
+	**		left behind carries over.
+	**	@throws IllegalStateException if dirty rendering is off.
+	**/
+	public Graphics2D getCanvasGraphics()
+	{
+		if (! dirtyRendering)
+			throw new IllegalStateException("Dirty rendering is off");
+		updateCanvas();
+		return canvasGraphics;
+	}
+	
+	/**
+	**	Puts every setting of the kept image's Graphics2D back to how it was made, like a new Graphics each frame would be.
+	**/
+	public void resetCanvasGraphics()
+	{
+		if (canvasState != null)
+			canvasState.restore(canvasGraphics);
+	}
+	
+	/**
+	**	Makes the kept image, again if the window's size has changed.
+	**/
+	private void updateCanvas()
+	{
+		if (canvas == null || canvas.getWidth() != getWidth() || canvas.getHeight() != getHeight())
+		{
+			if (canvasGraphics != null)
+				canvasGraphics.dispose();
+			canvas = createCompatibleImage(getWidth(), getHeight(), Transparency.OPAQUE);
+			canvasGraphics = canvas.createGraphics();
+			canvasState = new GraphicsState(canvasGraphics);
+			dirtyRegions.setSize(getWidth(), getHeight());
+		}
+	}
+	
+	/**
+	**	Makes the window's graphics again and marks the whole screen, if the window's changed since the last frame.
+	**/
+	private void applyWindowChanges()
+	{
+		if (! windowChanged)
+			return;
+		windowChanged = false;
+		releaseWindowGraphics();
+		dirtyRegions.setSize(getWidth(), getHeight());
+	}
+	
+	private void releaseWindowGraphics()
+	{
+		if (windowGraphics != null)
+		{
+			windowGraphics.dispose();
+			windowGraphics = null;
+		}
+	}
+	
+	public boolean isDirtyRendering()
+	{
+		return dirtyRendering;
+	}
+	
+	/**
+	**	Turns dirty rendering on or off. Either way the whole screen is marked, so the first frame afterwards is complete.
+	**		Only call this from the thread that draws, between frames, like from a game loop's update.
+	**/
+	public void setDirtyRendering(boolean b)
+	{
+		if (dirtyRendering == b)
+			return;
+		dirtyRendering = b;
+		if (! b)
+		{
+			if (canvasGraphics != null)
+				canvasGraphics.dispose();
+			canvas = null;
+			canvasGraphics = null;
+			canvasState = null;
+			releaseWindowGraphics();
+		}
+		dirtyRegions.setSize(getWidth(), getHeight());
+	}
+	
+	/**
+	**	Returns the regions of the screen to draw and show next frame when dirty rendering is on. Only call this from the
+	**		thread that draws.
+	**/
+	public DirtyRegions getDirtyRegions()
+	{
+		applyWindowChanges();
+		return dirtyRegions;
+	}
+	
 	public JFrame getGameWindow()
 	{
 		return gameWindow;
@@ -143,7 +304,9 @@ public class ScreenManager
 	**/
 	public void update()
 	{
-		if (gameWindow != null)
+		if (dirtyRendering)
+			showDirtyRegions();
+		else if (gameWindow != null)
 		{
 			BufferStrategy strat = gameWindow.getBufferStrategy();
 			if (! strat.contentsLost())
@@ -152,6 +315,26 @@ public class ScreenManager
 		Toolkit.getDefaultToolkit().sync();
 	}
 	
+	/**
+	**	Copies the marked regions of the kept image straight to the window, then clears them.
+	**/
+	private void showDirtyRegions()
+	{
+		applyWindowChanges();
+		if (canvas == null || dirtyRegions.isEmpty())
+			return;
+		if (windowGraphics == null)
+			windowGraphics = gameWindow.getGraphics();
+		if (windowGraphics == null)
+			return;
+		for (int i = 0; i < dirtyRegions.size(); ++i)
+		{
+			Rectangle r = dirtyRegions.get(i);
+			windowGraphics.drawImage(canvas, r.x, r.y, r.x + r.width, r.y + r.height, r.x, r.y, r.x + r.width, r.y + r.height, null);
+		}
+		dirtyRegions.clear();
+	}
+	
 	public int getWidth()
 	{
 		return gameWindow.getWidth();
@@ -172,6 +355,7 @@ public class ScreenManager
 	**/
 	public void end()
 	{
+		releaseWindowGraphics();
 		if (device.getFullScreenWindow() != null)
 			device.setFullScreenWindow(null);
 		gameWindow.dispose();
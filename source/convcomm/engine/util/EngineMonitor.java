@@ -0,0 +1,79 @@
+package convcomm.engine.util;
+
+/**
+**	Publishes a <code>GameEngine</code>'s frame rate and frame times. <code>GameEngine.init</code> registers one.
+**/
+public class EngineMonitor implements EngineMonitorMBean
+{
+	private final GameEngine engine;
+	
+	public EngineMonitor(GameEngine engine)
+	{
+		this.engine = engine;
+	}
+	
+	public int getFramesPerSecond()
+	{
+		return engine.getFPSCounter().getLastFPS();
+	}
+	
+	public int getTargetFPS()
+	{
+		return engine.getTargetFPS();
+	}
+	
+	public long getFrameCount()
+	{
+		return engine.getFrameStats().getFrame().getCount();
+	}
+	
+	public double getFrameTimeP50()
+	{
+		return Monitoring.millis(engine.getFrameStats().getFrame().getPercentile(0.5));
+	}
+	
+	public double getFrameTimeP99()
+	{
+		return Monitoring.millis(engine.getFrameStats().getFrame().getPercentile(0.99));
+	}
+	
+	public double getFrameTimeMax()
+	{
+		return Monitoring.millis(engine.getFrameStats().getFrame().getMax());
+	}
+	
+	public double getUpdateTimeP99()
+	{
+		return Monitoring.millis(engine.getFrameStats().getUpdate().getPercentile(0.99));
+	}
+	
+	public double getDrawTimeP99()
+	{
+		return Monitoring.millis(engine.getFrameStats().getDraw().getPercentile(0.99));
+	}
+	
+	public double getPresentTimeP99()
+	{
+		return Monitoring.millis(engine.getFrameStats().getPresent().getPercentile(0.99));
+	}
+	
+	public double getSyncTimeP99()
+	{
+		return Monitoring.millis(engine.getFrameStats().getSync().getPercentile(0.99));
+	}
+	
+	public double getAverageOvershoot()
+	{
+		return Monitoring.millis(engine.getFrameLimiter().getAverageOvershoot());
+	}
+	
+	public boolean isPaused()
+	{
+		return engine.isPaused();
+	}
+	
+	public void resetFrameStats()
+	{
+		engine.getFrameStats().reset();
+	}
+}
\ No newline at end of file
@@ -0,0 +1,23 @@
+package convcomm.engine.util;
+
+/**
+**	What <code>GameEngine</code> publishes over JMX, see <code>Monitoring</code>. Times are in milliseconds.
+**/
+public interface EngineMonitorMBean
+{
+	public int getFramesPerSecond();
+	public int getTargetFPS();
+	public long getFrameCount();
+	public double getFrameTimeP50();
+	public double getFrameTimeP99();
+	public double getFrameTimeMax();
+	public double getUpdateTimeP99();
+	public double getDrawTimeP99();
+	public double getPresentTimeP99();
+	public double getSyncTimeP99();
+	/**How late the frame limiter wakes up, on average.**/
+	public double getAverageOvershoot();
+	public boolean isPaused();
+	/**Forgets the frame times counted so far, to measure from now on.**/
+	public void resetFrameStats();
+}
\ No newline at end of file
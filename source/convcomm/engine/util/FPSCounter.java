@@ -2,18 +2,44 @@ package convcomm.engine.util;
 
 import java.awt.Graphics2D;
 import java.awt.Color;
+import java.awt.Rectangle;
 
+/**
+**	Counts frames per second. Drawn, it shows the last second's count, or when the HUD is on, the frame-time
+**		percentiles of each phase of a frame from a <code>FrameStats</code> and a graph of the most recent frame times.
+**		The text is only remade once a second, when the count is, so drawing doesn't make new strings every frame.
+**/
 public class FPSCounter
 {
-	private int lastFPS;
+	private static final int X = 10, Y = 10, LINE_HEIGHT = 15;
+	private static final int HUD_WIDTH = 300, HUD_TEXT_HEIGHT = 6 * LINE_HEIGHT + 5, GRAPH_HEIGHT = 60;
+	private static final double GRAPH_MILLIS = 50.0; // frame time at the top of the graph
+	private static final Color HUD_BACKGROUND = new Color(0, 0, 0, 192);
+	private static final Color GRAPH_MARK = new Color(255, 255, 255, 96);
+	private static final String[] PHASE_NAMES = {"frame", "update", "draw", "present", "sync"};
+	
+	private volatile int lastFPS; // read by monitoring
 	private int frames;
 	private long timer;
+	private FrameStats stats;
+	private boolean hudVisible;
+	private String fpsText;
+	private String[] phaseText; // p50, p99 and max for each phase in turn
 	
 	public FPSCounter()
 	{
-		lastFPS = 0;
-		frames = 0;
-		timer = 1000;
+		this(null);
+	}
+	
+	/**
+	**	@param stats What the HUD shows, or null for no HUD.
+	**/
+	public FPSCounter(FrameStats stats)
+	{
+		this.stats = stats;
+		hudVisible = false;
+		phaseText = new String[PHASE_NAMES.length * 3];
+		reset();
 	}
 	
 	public void reset()
@@ -21,6 +47,7 @@ public class FPSCounter
 		lastFPS = 0;
 		frames = 0;
 		timer = 1000;
+		fpsText = null;
 	}
 	
 	public void update(long time)
@@ -32,15 +59,121 @@ public class FPSCounter
 			lastFPS = frames;
 			frames = 0;
 			timer += 1000;
+			fpsText = null;
 		}
 	}
 	
+	public boolean isHUDVisible()
+	{
+		return hudVisible;
+	}
+	
+	/**
+	**	Sets if <code>draw</code> shows the full HUD rather than just the frame rate. There's no HUD without frame stats.
+	**/
+	public void setHUDVisible(boolean visible)
+	{
+		hudVisible = visible && stats != null;
+		fpsText = null;
+	}
+	
+	public void toggleHUD()
+	{
+		setHUDVisible(! hudVisible);
+	}
+	
+	/**
+	**	Returns the area <code>draw</code> draws over, so it can be marked to be redrawn.
+	**/
+	public Rectangle getBounds()
+	{
+		return getBounds(new Rectangle());
+	}
+	
+	/**
+	**	Puts the area <code>draw</code> draws over in <code>result</code> rather than making a new rectangle.
+	**	@return <code>result</code>
+	**/
+	public Rectangle getBounds(Rectangle result)
+	{
+		if (hudVisible)
+			result.setBounds(X, Y, HUD_WIDTH, HUD_TEXT_HEIGHT + GRAPH_HEIGHT);
+		else
+			result.setBounds(X, Y, 60, 20);
+		return result;
+	}
+	
 	public void draw(Graphics2D g)
 	{
-		g.setColor(Color.BLACK);
-		g.fillRect(10, 10, 60, 20);
+		if (fpsText == null)
+			updateText();
+		if (! hudVisible)
+		{
+			g.setColor(Color.BLACK);
+			g.fillRect(X, Y, 60, 20);
+			g.setColor(Color.WHITE);
+			g.drawString(fpsText, X + 1, Y + 15);
+			return;
+		}
+		g.setColor(HUD_BACKGROUND);
+		g.fillRect(X, Y, HUD_WIDTH, HUD_TEXT_HEIGHT + GRAPH_HEIGHT);
 		g.setColor(Color.WHITE);
-		g.drawString("" + lastFPS + " FPS", 11, 25);
+		int y = Y + LINE_HEIGHT;
+		g.drawString(fpsText, X + 5, y);
+		g.drawString("    p50", X + 110, y);
+		g.drawString("    p99", X + 170, y);
+		g.drawString("max (ms)", X + 230, y);
+		for (int i = 0; i < PHASE_NAMES.length; ++i)
+		{
+			y += LINE_HEIGHT;
+			g.drawString(PHASE_NAMES[i], X + 5, y);
+			g.drawString(phaseText[i * 3], X + 110, y);
+			g.drawString(phaseText[i * 3 + 1], X + 170, y);
+			g.drawString(phaseText[i * 3 + 2], X + 230, y);
+		}
+		drawGraph(g, X, Y + HUD_TEXT_HEIGHT);
+	}
+	
+	private void updateText()
+	{
+		fpsText = lastFPS + " FPS";
+		if (stats == null)
+			return;
+		Histogram[] phases = {stats.getFrame(), stats.getUpdate(), stats.getDraw(), stats.getPresent(), stats.getSync()};
+		for (int i = 0; i < phases.length; ++i)
+		{
+			phaseText[i * 3] = millis(phases[i].getPercentile(0.5));
+			phaseText[i * 3 + 1] = millis(phases[i].getPercentile(0.99));
+			phaseText[i * 3 + 2] = millis(phases[i].getMax());
+		}
+	}
+	
+	/**
+	**	Draws a bar per recent frame, newest on the right, with marks at 60 and 30 frames per second.
+	**/
+	private void drawGraph(Graphics2D g, int left, int top)
+	{
+		int barWidth = Math.max(1, HUD_WIDTH / FrameStats.RECENT_FRAMES);
+		int count = stats.getRecentCount();
+		int x = left + HUD_WIDTH - count * barWidth;
+		for (int i = 0; i < count; ++i)
+		{
+			double ms = stats.getRecentFrame(i) / 1000000.0;
+			int h = (int) Math.min(GRAPH_HEIGHT, ms * GRAPH_HEIGHT / GRAPH_MILLIS);
+			g.setColor((ms > 1000.0 / 30) ? Color.RED : (ms > 1000.0 / 60) ? Color.YELLOW : Color.GREEN);
+			g.fillRect(x, top + GRAPH_HEIGHT - h, barWidth, h);
+			x += barWidth;
+		}
+		g.setColor(GRAPH_MARK);
+		int y60 = top + GRAPH_HEIGHT - (int) (1000.0 / 60 * GRAPH_HEIGHT / GRAPH_MILLIS);
+		int y30 = top + GRAPH_HEIGHT - (int) (1000.0 / 30 * GRAPH_HEIGHT / GRAPH_MILLIS);
+		g.drawLine(left, y60, left + HUD_WIDTH - 1, y60);
+		g.drawLine(left, y30, left + HUD_WIDTH - 1, y30);
+	}
+	
+	private static String millis(long nanos)
+	{
+		return String.format("%7.2f", nanos / 1000000.0);
 	}
 	
 	public int getLastFPS()
@@ -0,0 +1,117 @@
+package convcomm.engine.util;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+**	Holds a loop to a target number of frames per second without keeping a core busy. Each frame has a deadline one
+**		frame period after the last; waiting parks the thread until just before it, then spins through the last moment,
+**		since parking alone can wake up late by tens of microseconds or more.
+**
+**	<p>Deadlines follow on from each other rather than from when a frame finished, so the rate holds even when frames
+**		take different times. A loop that falls more than a frame behind starts counting again from now instead of
+**		rushing frames out to catch up.</p>
+**/
+public class FrameLimiter
+{
+	/**How long before a deadline to stop parking and start spinning.**/
+	public static final long SPIN_NANOS = 200000;
+	
+	private static final double AVERAGE_WEIGHT = 1.0 / 32;
+	
+	private volatile int targetFPS;
+	private long period, deadline;
+	private volatile long lastOvershoot, maxOvershoot; // volatile so monitoring can read them from other threads
+	private volatile double averageOvershoot;
+	
+	/**
+	**	@param targetFPS The frames per second to hold to, or 0 to not wait at all.
+	**/
+	public FrameLimiter(int targetFPS)
+	{
+		setTargetFPS(targetFPS);
+	}
+	
+	public void setTargetFPS(int targetFPS)
+	{
+		if (targetFPS < 0)
+			throw new IllegalArgumentException("Negative frame rate " + targetFPS);
+		this.targetFPS = targetFPS;
+		period = (targetFPS == 0) ? 0 : 1000000000L / targetFPS;
+		deadline = System.nanoTime() + period;
+		resetOvershoot();
+	}
+	
+	/**
+	**	Returns the frames per second being held to, or 0 if there's no limit.
+	**/
+	public int getTargetFPS()
+	{
+		return targetFPS;
+	}
+	
+	/**
+	**	Waits until the current frame's deadline, then sets the next one.
+	**/
+	public void waitForNextFrame()
+	{
+		if (period == 0)
+			return;
+		long now = System.nanoTime();
+		long remaining = deadline - now;
+		if (remaining > SPIN_NANOS)
+		{
+			LockSupport.parkNanos(remaining - SPIN_NANOS);
+			now = System.nanoTime();
+			remaining = deadline - now;
+		}
+		while (remaining > 0)
+		{
+			Thread.yield();
+			now = System.nanoTime();
+			remaining = deadline - now;
+		}
+		
+		lastOvershoot = -remaining;
+		if (lastOvershoot < period)
+		{
+			if (lastOvershoot > maxOvershoot)
+				maxOvershoot = lastOvershoot;
+			averageOvershoot += (lastOvershoot - averageOvershoot) * AVERAGE_WEIGHT;
+			deadline += period;
+		}
+		else
+			deadline = now + period; // the frame itself ran long, that's not the limiter's to measure
+	}
+	
+	/**
+	**	Returns the nanoseconds the last wait ended after its deadline.
+	**/
+	public long getLastOvershoot()
+	{
+		return lastOvershoot;
+	}
+	
+	/**
+	**	Returns the average nanoseconds waits end after their deadlines, weighted towards recent frames.
+	**/
+	public long getAverageOvershoot()
+	{
+		return (long) averageOvershoot;
+	}
+	
+	/**
+	**	Returns the most nanoseconds a wait has ended after its deadline since the target was set or the overshoot reset.
+	**		Frames that took longer than a whole frame on their own aren't counted.
+	**/
+	public long getMaxOvershoot()
+	{
+		return maxOvershoot;
+	}
+	
+	public void resetOvershoot()
+	{
+		lastOvershoot = 0;
+		maxOvershoot = 0;
+		averageOvershoot = 0;
+	}
+}
\ No newline at end of file
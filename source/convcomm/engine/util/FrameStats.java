@@ -0,0 +1,98 @@
+package convcomm.engine.util;
+
+/**
+**	How long each part of a frame takes, measured by <code>GameEngine</code> every frame. Each phase has a
+**		<code>Histogram</code> for percentiles, and the last <code>RECENT_FRAMES</code> whole-frame times are kept in order
+**		for graphing.
+**
+**	<p>The phases are updating the game, drawing it to the back buffer, presenting the back buffer on screen, and
+**		syncing, which is waiting for the frame limiter. A frame is the time from the start of one to the start of the next,
+**		so it is the four phases plus whatever the engine does in between.</p>
+**/
+public class FrameStats
+{
+	/**The number of frames kept for <code>getRecentFrame</code>, about a second at the default frame rate.**/
+	public static final int RECENT_FRAMES = 120;
+	
+	private final Histogram frame, update, draw, present, sync;
+	private final long[] recent;
+	private int recentNext;
+	private long recentCount;
+	
+	public FrameStats()
+	{
+		frame = new Histogram();
+		update = new Histogram();
+		draw = new Histogram();
+		present = new Histogram();
+		sync = new Histogram();
+		recent = new long[RECENT_FRAMES];
+		recentNext = 0;
+		recentCount = 0;
+	}
+	
+	/**
+	**	Counts a whole frame, in nanoseconds. Only the game loop's thread should call this.
+	**/
+	public void recordFrame(long nanos)
+	{
+		frame.record(nanos);
+		recent[recentNext] = nanos;
+		recentNext = (recentNext + 1) % RECENT_FRAMES;
+		++recentCount;
+	}
+	
+	public Histogram getFrame()
+	{
+		return frame;
+	}
+	
+	public Histogram getUpdate()
+	{
+		return update;
+	}
+	
+	public Histogram getDraw()
+	{
+		return draw;
+	}
+	
+	public Histogram getPresent()
+	{
+		return present;
+	}
+	
+	public Histogram getSync()
+	{
+		return sync;
+	}
+	
+	/**
+	**	Returns the number of recent frame times there are, up to <code>RECENT_FRAMES</code>.
+	**/
+	public int getRecentCount()
+	{
+		return (int) Math.min(recentCount, RECENT_FRAMES);
+	}
+	
+	/**
+	**	Returns a recent frame time in nanoseconds, 0 being the oldest kept. Only meant for the game loop's own thread,
+	**		like for drawing a graph.
+	**/
+	public long getRecentFrame(int i)
+	{
+		int count = getRecentCount();
+		return recent[(recentNext - count + i + RECENT_FRAMES) % RECENT_FRAMES];
+	}
+	
+	public void reset()
+	{
+		frame.reset();
+		update.reset();
+		draw.reset();
+		present.reset();
+		sync.reset();
+		recentNext = 0;
+		recentCount = 0;
+	}
+}
\ No newline at end of file
@@ -2,10 +2,13 @@ package convcomm.engine.util;
 
 import convcomm.engine.graphics.*;
 import convcomm.engine.input.InputManager;
+import convcomm.engine.input.VirtualKey;
 import convcomm.engine.audio.SoundManager;
 
 import java.awt.geom.*;
 import java.awt.*;
+import java.awt.event.KeyEvent;
+import javax.management.ObjectName;
 import javax.swing.ImageIcon;
 
 /**
@@ -16,9 +19,22 @@ import javax.swing.ImageIcon;
 **/
 public class GameEngine extends EmptyGameLoop
 {
+	/**The most updates run in one frame to catch up with a fixed timestep. Time behind beyond that is dropped.**/
+	public static final int MAX_CATCH_UP_STEPS = 5;
+	/**The frame rate the engine holds to unless told otherwise.**/
+	public static final int DEFAULT_TARGET_FPS = 120;
+	/**Threads decoding images at once. Each big decode holds its whole picture in memory, so this is kept low.**/
+	public static final int IMAGE_LOADER_THREADS = 2;
+	
 	private boolean isRunning;
 	private boolean paused;
-	private GameLoop currentLoop;
+	private volatile GameLoop currentLoop; // set from the Swing event thread by setCurrentLoop
+	private long fixedStep, accumulatedNanos; // fixedStep is in milliseconds, 0 for a variable timestep
+	private FrameLimiter frameLimiter;
+	private FrameStats frameStats;
+	private VirtualKey toggleHUD;
+	private Rectangle hudBounds;
+	private ObjectName monitorName;
 	
 	/**Keeps track of the frames per second in the game. Draw to the screen if you want, or just forget about it.**/
 	protected FPSCounter fpsCounter;
@@ -32,6 +48,9 @@ public class GameEngine extends EmptyGameLoop
 	/**Use to play sounds and music.**/
 	protected SoundManager soundManager;
 	
+	/**Use to load images without stalling the game or the window.**/
+	protected ImageLoader imageLoader;
+	
 	/**
 	**	Starts and runs the game in a new window of the specified width, height, and if it is full-screen.
 	**/
@@ -45,9 +64,12 @@ public class GameEngine extends EmptyGameLoop
 		}
 		finally
 		{
+			Monitoring.unregister(monitorName);
 			screen.end();
 			if (soundManager != null)
 				soundManager.close();
+			if (imageLoader != null)
+				imageLoader.close();
 		}
 	}
 	
@@ -69,7 +91,13 @@ public class GameEngine extends EmptyGameLoop
 			soundManager = new SoundManager();
 		else
 			soundManager = null;
-		fpsCounter = new FPSCounter();
+		imageLoader = new ImageLoader(IMAGE_LOADER_THREADS);
+		frameStats = new FrameStats();
+		fpsCounter = new FPSCounter(frameStats);
+		hudBounds = new Rectangle();
+		toggleHUD = new VirtualKey("Performance HUD", VirtualKey.Behavior.INITIAL_PRESS_ONLY);
+		inputManager.mapToKeyboard(toggleHUD, KeyEvent.VK_F3);
+		monitorName = Monitoring.register("GameEngine", getClass().getSimpleName(), new EngineMonitor(this));
 		
 		screen.getGameWindow().setBackground(Color.BLACK);
 		screen.getGameWindow().setForeground(Color.WHITE);
@@ -77,6 +105,9 @@ public class GameEngine extends EmptyGameLoop
 		isRunning = true;
 		paused = false;
 		currentLoop = null;
+		fixedStep = 0;
+		accumulatedNanos = 0;
+		frameLimiter = new FrameLimiter(DEFAULT_TARGET_FPS);
 	}
 	
 	/**
@@ -87,29 +118,78 @@ public class GameEngine extends EmptyGameLoop
 		return new ImageIcon(fileName).getImage();
 	}
 	
+	/**
+	**	Makes every update be given exactly <code>step</code> milliseconds, running as many updates each frame as the time
+	**		since the last one calls for, and telling <code>Interpolatable</code> loops how far past the last update each
+	**		draw is. Pass 0 to go back to one update per frame given however long the frame took, which is the default.
+	**/
+	public void setFixedTimestep(long step)
+	{
+		if (step < 0)
+			throw new IllegalArgumentException("Negative timestep " + step);
+		fixedStep = step;
+		accumulatedNanos = 0;
+	}
+	
+	/**
+	**	Returns the milliseconds each update is given, or 0 if updates are given the length of each frame.
+	**/
+	public long getFixedTimestep()
+	{
+		return fixedStep;
+	}
+	
+	/**
+	**	Sets how many frames per second the game runs at most. Between frames the engine parks its thread rather than
+	**		spinning, so a lower target uses less processor time. Pass 0 to run as fast as possible.
+	**/
+	public void setTargetFPS(int fps)
+	{
+		frameLimiter.setTargetFPS(fps);
+	}
+	
+	public int getTargetFPS()
+	{
+		return frameLimiter.getTargetFPS();
+	}
+	
+	/**
+	**	Returns the frame limiter, to read how late frames are by its measure. See <code>FrameLimiter.getAverageOvershoot</code>.
+	**/
+	public FrameLimiter getFrameLimiter()
+	{
+		return frameLimiter;
+	}
+	
 	/**
 	** The game loop. Updates, draws, and that's about it.
 	**/
 	public void gameLoop()
 	{
-		long startTime = System.currentTimeMillis();
-		long currTime = startTime;
+		long lastFrame = System.nanoTime();
+		long currTime = lastFrame;
 		while (isRunning)
 		{
-			long elapsedTime = System.currentTimeMillis() - currTime;
-			currTime += elapsedTime;
+			long now = System.nanoTime();
+			long frameNanos = now - lastFrame;
+			lastFrame = now;
+			long elapsedTime = (now - currTime) / 1000000;
+			currTime += elapsedTime * 1000000; // keep the leftover so rounding to milliseconds doesn't build up
 			
 			if (currentLoop != null)
 			{
 				if (currentLoop.continueLoop())
-					runLoop(currentLoop, elapsedTime);
+					runLoop(currentLoop, elapsedTime, frameNanos);
 				else
+				{
 					currentLoop = currentLoop.nextLoop();
+					screen.setDirtyRendering(false); // each loop decides for itself
+				}
 			}
 			else
 			{
 				if (continueLoop())
-					runLoop(this, elapsedTime);
+					runLoop(this, elapsedTime, frameNanos);
 				else
 				{
 					currentLoop = nextLoop();
@@ -117,43 +197,112 @@ public class GameEngine extends EmptyGameLoop
 						stop();
 				}
 			}
-			if (fpsCounter.getLastFPS() > 120)
+			long syncStart = System.nanoTime();
+			frameLimiter.waitForNextFrame();
+			frameStats.getSync().record(System.nanoTime() - syncStart);
+		}
+	}
+	
+	/**
+	**	@param elapsedTime The milliseconds since the last frame.
+	**	@param frameNanos The nanoseconds since the last frame, for the fixed timestep to keep count in.
+	**/
+	private void runLoop(GameLoop loop, long elapsedTime, long frameNanos)
+	{
+		fpsCounter.update(elapsedTime);
+		frameStats.recordFrame(frameNanos);
+		if (toggleHUD.isPressed())
+		{
+			fpsCounter.toggleHUD();
+			screen.getDirtyRegions().addAll();
+		}
+		
+		long phaseStart = System.nanoTime();
+		float alpha = 1.0f;
+		if (fixedStep == 0)
+			updateLoop(loop, elapsedTime);
+		else
+		{
+			long stepNanos = fixedStep * 1000000;
+			accumulatedNanos += frameNanos;
+			int steps = 0;
+			while (accumulatedNanos >= stepNanos)
+			{
+				if (steps == MAX_CATCH_UP_STEPS)
+				{
+					accumulatedNanos %= stepNanos; // too far behind, like after a dialog: skip ahead rather than fast-forward
+					break;
+				}
+				updateLoop(loop, fixedStep);
+				accumulatedNanos -= stepNanos;
+				++steps;
+			}
+			alpha = (float) accumulatedNanos / stepNanos;
+		}
+		if (loop instanceof Interpolatable)
+			((Interpolatable) loop).setInterpolation(alpha);
+		long now = System.nanoTime();
+		frameStats.getUpdate().record(now - phaseStart);
+		phaseStart = now;
+		
+		if (screen.isDirtyRendering())
+		{
+			DirtyRegions dirty = screen.getDirtyRegions();
+			if (fpsCounter.isHUDVisible())
+				dirty.add(fpsCounter.getBounds(hudBounds));
+			if (! dirty.isEmpty())
 			{
-				try
+				Graphics2D g = screen.getCanvasGraphics();
+				for (int i = 0; i < dirty.size(); ++i)
 				{
-					Thread.sleep(5);
+					Rectangle r = dirty.get(i);
+					screen.resetCanvasGraphics(); // whatever the last region's draw left set, start from a clean Graphics
+					g.setClip(r.x, r.y, r.width, r.height);
+					wipeScreen(g, r.x, r.y, r.width, r.height);
+					drawLoop(loop, g);
 				}
-				catch (InterruptedException ie) {}
+				screen.resetCanvasGraphics();
 			}
 		}
+		else
+		{
+			Graphics2D g = screen.getGraphics();
+			wipeScreen(g, 0, 0, screen.getWidth(), screen.getHeight());
+			drawLoop(loop, g);
+			g.dispose();
+		}
+		now = System.nanoTime();
+		frameStats.getDraw().record(now - phaseStart);
+		phaseStart = now;
+		screen.update();
+		frameStats.getPresent().record(System.nanoTime() - phaseStart);
 	}
 	
-	private void runLoop(GameLoop loop, long elapsedTime)
+	private void updateLoop(GameLoop loop, long time)
 	{
-		fpsCounter.update(elapsedTime);
-		
-		loop.globalUpdate(elapsedTime);
+		loop.globalUpdate(time);
 		if (isPaused())
-			loop.pausedUpdate(elapsedTime);
+			loop.pausedUpdate(time);
 		else
-			loop.unpausedUpdate(elapsedTime);
-		
-		Graphics2D g = screen.getGraphics();
-		wipeScreen(g);
+			loop.unpausedUpdate(time);
+	}
+	
+	private void drawLoop(GameLoop loop, Graphics2D g)
+	{
 		loop.globalDraw(g);
 		if (isPaused())
 			loop.pausedDraw(g);
 		else
 			loop.unpausedDraw(g);
-		g.dispose();
-		screen.update();
+		if (fpsCounter.isHUDVisible())
+			fpsCounter.draw(g);
 	}
 	
-	private void wipeScreen(Graphics2D g)
+	private void wipeScreen(Graphics2D g, int x, int y, int width, int height)
 	{
 		Color temp = g.getColor();
 		g.setColor(Color.BLACK);
-		g.fillRect(0, 0, screen.getWidth(), screen.getHeight());
+		g.fillRect(x, y, width, height);
 		g.setColor(temp);
 	}
 	
@@ -168,6 +317,7 @@ public class GameEngine extends EmptyGameLoop
 		{
 			paused = p;
 			inputManager.resetAllVirtualKeys();
+			screen.getDirtyRegions().addAll();
 		}
 	}
 	
@@ -196,6 +346,14 @@ public class GameEngine extends EmptyGameLoop
 		return fpsCounter;
 	}
 	
+	/**
+	**	Returns how long each part of recent frames has taken. F3 shows them on screen.
+	**/
+	public FrameStats getFrameStats()
+	{
+		return frameStats;
+	}
+	
 	protected void setCurrentLoop(GameLoop loop)
 	{
 		if (loop != null && currentLoop == null)
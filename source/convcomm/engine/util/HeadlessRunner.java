@@ -0,0 +1,168 @@
+package convcomm.engine.util;
+
+import convcomm.engine.graphics.GraphicsState;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+**	Runs a <code>GameLoop</code> without a window, on a made-up clock. Every frame is exactly <code>frameTime</code>
+**		milliseconds long and frames are run back to back, so a loop can be played through as fast as the machine can
+**		update it, and the same inputs always give the same results. Nothing here touches the screen, keyboard or mouse, so
+**		it works on machines with no display at all.
+**
+**	<p>Loops are run like <code>GameEngine</code> runs them: each frame calls the global and paused or unpaused update,
+**		then, if there's a canvas, the draws; when a loop's <code>continueLoop()</code> returns false its
+**		<code>nextLoop()</code> takes over, until there isn't one.</p>
+**
+**	<p>Drawing is off unless <code>setCanvas</code> is given an image, since most simulations only care about the game
+**		state and drawing is most of the cost of a frame.</p>
+**/
+public class HeadlessRunner
+{
+	/**The frame time used if none is given, about 60 frames per second.**/
+	public static final long DEFAULT_FRAME_TIME = 16;
+	
+	private GameLoop currentLoop;
+	private long frameTime, time, frames;
+	private boolean paused;
+	private BufferedImage canvas;
+	private Graphics2D graphics; // kept for the canvas, so drawing a frame doesn't allocate
+	private GraphicsState graphicsState; // graphics as it was made, put back before each frame
+	
+	public HeadlessRunner(GameLoop loop)
+	{
+		this(loop, DEFAULT_FRAME_TIME);
+	}
+	
+	/**
+	**	@param frameTime The milliseconds each frame pretends to take, passed to every update.
+	**/
+	public HeadlessRunner(GameLoop loop, long frameTime)
+	{
+		if (frameTime < 0)
+			throw new IllegalArgumentException("Negative frame time " + frameTime);
+		currentLoop = loop;
+		this.frameTime = frameTime;
+		time = 0;
+		frames = 0;
+		paused = false;
+		canvas = null;
+	}
+	
+	/**
+	**	Sets an image for every frame to be drawn to, or null to not draw at all.
+	**/
+	public void setCanvas(BufferedImage canvas)
+	{
+		if (graphics != null)
+			graphics.dispose();
+		this.canvas = canvas;
+		graphics = (canvas == null) ? null : canvas.createGraphics();
+		graphicsState = (canvas == null) ? null : new GraphicsState(graphics);
+	}
+	
+	public BufferedImage getCanvas()
+	{
+		return canvas;
+	}
+	
+	public void setPaused(boolean paused)
+	{
+		this.paused = paused;
+	}
+	
+	public boolean isPaused()
+	{
+		return paused;
+	}
+	
+	public long getFrameTime()
+	{
+		return frameTime;
+	}
+	
+	public void setFrameTime(long frameTime)
+	{
+		if (frameTime < 0)
+			throw new IllegalArgumentException("Negative frame time " + frameTime);
+		this.frameTime = frameTime;
+	}
+	
+	/**
+	**	Returns the loop being run, or null once every loop has finished.
+	**/
+	public GameLoop getCurrentLoop()
+	{
+		return currentLoop;
+	}
+	
+	public boolean isFinished()
+	{
+		return currentLoop == null;
+	}
+	
+	/**
+	**	Returns the milliseconds of made-up time run so far.
+	**/
+	public long getTime()
+	{
+		return time;
+	}
+	
+	/**
+	**	Returns the number of frames run so far.
+	**/
+	public long getFrames()
+	{
+		return frames;
+	}
+	
+	/**
+	**	Runs one frame of the current loop, then moves on to the next loop if it's finished.
+	**	@return False if there was no loop left to run.
+	**/
+	public boolean step()
+	{
+		if (currentLoop == null)
+			return false;
+		GameLoop loop = currentLoop;
+		loop.globalUpdate(frameTime);
+		if (paused)
+			loop.pausedUpdate(frameTime);
+		else
+			loop.unpausedUpdate(frameTime);
+		if (canvas != null)
+			draw(loop);
+		time += frameTime;
+		++frames;
+		if (! loop.continueLoop())
+			currentLoop = loop.nextLoop();
+		return true;
+	}
+	
+	/**
+	**	Runs frames until every loop has finished or <code>maxFrames</code> frames have been run in this call.
+	**	@return True if every loop finished, false if it stopped at the frame limit.
+	**/
+	public boolean run(long maxFrames)
+	{
+		for (long i = 0; i < maxFrames && currentLoop != null; ++i)
+			step();
+		return currentLoop == null;
+	}
+	
+	private void draw(GameLoop loop)
+	{
+		Graphics2D g = graphics;
+		graphicsState.restore(g);
+		g.setPaint(Color.BLACK);
+		g.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+		loop.globalDraw(g);
+		if (paused)
+			loop.pausedDraw(g);
+		else
+			loop.unpausedDraw(g);
+	}
+}
\ No newline at end of file
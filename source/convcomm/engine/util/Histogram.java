@@ -0,0 +1,132 @@
+package convcomm.engine.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+**	Counts how often durations fall into fixed buckets, to report percentiles without keeping every value. Buckets are
+**		a microsecond wide up to 8 microseconds, then each power of two is split into 8, so any value is reported within
+**		about 12% of itself, from a microsecond up to several hours.
+**
+**	<p>Recording is a couple of atomic increments with no locks or allocation, so the game loop can record into it while
+**		other threads read it. Readers see each bucket as it is at the moment they read it, which can be a frame or so out
+**		of step with the others.</p>
+**/
+public class Histogram
+{
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - 10 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS; // enough for any long of nanoseconds
+	
+	private final AtomicLongArray buckets;
+	private final AtomicLong count, total, max;
+	
+	public Histogram()
+	{
+		buckets = new AtomicLongArray(BUCKETS);
+		count = new AtomicLong();
+		total = new AtomicLong();
+		max = new AtomicLong();
+	}
+	
+	/**
+	**	Counts a duration.
+	**	@param nanos The duration in nanoseconds. Negative values are counted as 0.
+	**/
+	public void record(long nanos)
+	{
+		if (nanos < 0)
+			nanos = 0;
+		buckets.incrementAndGet(bucketOf(nanos));
+		count.incrementAndGet();
+		total.addAndGet(nanos);
+		long m = max.get();
+		while (nanos > m && ! max.compareAndSet(m, nanos))
+			m = max.get();
+	}
+	
+	/**
+	**	Returns the number of durations counted.
+	**/
+	public long getCount()
+	{
+		return count.get();
+	}
+	
+	/**
+	**	Returns the longest duration counted, exactly, in nanoseconds.
+	**/
+	public long getMax()
+	{
+		return max.get();
+	}
+	
+	/**
+	**	Returns the average duration counted in nanoseconds, or 0 if none have been.
+	**/
+	public long getMean()
+	{
+		long n = count.get();
+		return (n == 0) ? 0 : total.get() / n;
+	}
+	
+	/**
+	**	Returns the duration that the given fraction of those counted were no longer than, in nanoseconds, rounded up to
+	**		the top of its bucket but never past the maximum.
+	**	@param fraction From 0 to 1, like 0.99 for the 99th percentile.
+	**/
+	public long getPercentile(double fraction)
+	{
+		long n = 0;
+		for (int i = 0; i < BUCKETS; ++i)
+			n += buckets.get(i);
+		if (n == 0)
+			return 0;
+		long rank = (long) Math.ceil(fraction * n);
+		if (rank < 1)
+			rank = 1;
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; ++i)
+		{
+			seen += buckets.get(i);
+			if (seen >= rank)
+				return Math.min(upperBound(i), max.get());
+		}
+		return max.get();
+	}
+	
+	/**
+	**	Forgets everything counted. Values recorded while this runs may be partly kept.
+	**/
+	public void reset()
+	{
+		for (int i = 0; i < BUCKETS; ++i)
+			buckets.set(i, 0);
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+	
+	/**
+	**	Works in units of 1024 ns, close enough to microseconds and a shift away from nanoseconds.
+	**/
+	private static int bucketOf(long nanos)
+	{
+		long micros = nanos >>> 10;
+		if (micros < SUB_BUCKETS)
+			return (int) micros;
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		int mantissa = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa;
+	}
+	
+	private static long upperBound(int bucket)
+	{
+		if (bucket < SUB_BUCKETS)
+			return ((bucket + 1L) << 10) - 1;
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long mantissa = SUB_BUCKETS + bucket % SUB_BUCKETS;
+		long bound = ((mantissa + 1) << (exponent - SUB_BUCKET_BITS) << 10) - 1;
+		return (bound < 0) ? Long.MAX_VALUE : bound; // the top bucket runs past the largest long
+	}
+}
\ No newline at end of file
@@ -0,0 +1,13 @@
+package convcomm.engine.util;
+
+/**
+**	Hears how far an <code>ImageLoader</code> has got decoding an image. It's called on the loader's thread, so anything
+**		that touches Swing has to be passed on with <code>SwingUtilities.invokeLater</code>.
+**/
+public interface ImageLoadListener
+{
+	/**
+	**	@param fraction How much of the image has been decoded, from 0 to 1.
+	**/
+	public void imageProgress(float fraction);
+}
\ No newline at end of file
@@ -0,0 +1,285 @@
+package convcomm.engine.util;
+
+import convcomm.engine.graphics.ImageCache;
+import convcomm.engine.graphics.ImageScaler;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.event.IIOReadProgressListener;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+**	Decodes images with <code>ImageIO</code> on its own threads, so a big picture never stalls the game loop or the
+**		Swing event thread. Loads return a <code>Future</code> straight away; poll <code>isDone()</code> from the game loop,
+**		or wait on it from somewhere that can, and pass an <code>ImageLoadListener</code> to show progress.
+**
+**	<p>Cancelling a load with <code>cancel(true)</code> stops the decoder at its next progress report.</p>
+**
+**	<p>Decoded images are kept in the shared <code>ImageCache</code> under their file path or URL, so loading one again is
+**		free while it's still there. They're shared, so don't draw into them.</p>
+**/
+public class ImageLoader extends ThreadPool
+{
+	public ImageLoader(int numThreads)
+	{
+		super(numThreads);
+	}
+	
+	/**
+	**	Starts decoding an image file.
+	**	@param listener Told how far the decode has got. May be null.
+	**/
+	public Future<BufferedImage> load(final File file, final ImageLoadListener listener)
+	{
+		return submit(new Callable<BufferedImage>()
+		{
+			public BufferedImage call() throws IOException
+			{
+				return read(file, listener);
+			}
+		});
+	}
+	
+	/**
+	**	Starts decoding an image from a URL, like a resource in the game's jar.
+	**	@param listener Told how far the decode has got. May be null.
+	**/
+	public Future<BufferedImage> load(final URL url, final ImageLoadListener listener)
+	{
+		return submit(new Callable<BufferedImage>()
+		{
+			public BufferedImage call() throws IOException
+			{
+				return read(url, listener);
+			}
+		});
+	}
+	
+	/**
+	**	Runs any task on the loader's threads, like scaling an image once it's loaded.
+	**/
+	public <T> Future<T> submit(Callable<T> task)
+	{
+		final FutureTask<T> future = new FutureTask<T>(task);
+		runTask(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					future.run();
+				}
+				finally
+				{
+					Thread.interrupted(); // a cancelled task leaves its thread interrupted, which would end the pooled thread
+				}
+			}
+		});
+		return future;
+	}
+	
+	/**
+	**	Decodes an image file on the calling thread, unless it's cached.
+	**	@param listener Told how far the decode has got. May be null.
+	**	@throws IOException if the file can't be read or isn't an image ImageIO knows.
+	**/
+	public static BufferedImage read(File file, ImageLoadListener listener) throws IOException
+	{
+		BufferedImage cached = cached(file.getPath(), listener);
+		if (cached != null)
+			return cached;
+		if (! file.isFile())
+			throw new FileNotFoundException(file.getPath());
+		ImageInputStream in = ImageIO.createImageInputStream(file);
+		if (in == null)
+			throw new IOException("Can't read " + file);
+		return cache(file.getPath(), read(in, file.getPath(), listener, 0, 0));
+	}
+	
+	/**
+	**	Decodes an image from a URL on the calling thread, unless it's cached.
+	**	@param listener Told how far the decode has got. May be null.
+	**	@throws IOException if the URL can't be read or isn't an image ImageIO knows.
+	**/
+	public static BufferedImage read(URL url, ImageLoadListener listener) throws IOException
+	{
+		if (url == null)
+			throw new FileNotFoundException("No image given");
+		BufferedImage cached = cached(url.toExternalForm(), listener);
+		if (cached != null)
+			return cached;
+		InputStream stream = url.openStream();
+		try
+		{
+			ImageInputStream in = ImageIO.createImageInputStream(stream);
+			if (in == null)
+				throw new IOException("Can't read " + url);
+			return cache(url.toExternalForm(), read(in, url.toExternalForm(), listener, 0, 0));
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+	
+	/**
+	**	Decodes an image file scaled down to fit inside a box, like a thumbnail, on the calling thread. Only every so many
+	**		pixels of a much bigger image are decoded, so a huge photo never takes a huge image's memory. Scaled images
+	**		aren't cached.
+	**	@param listener Told how far the decode has got. May be null.
+	**	@throws IOException if the file can't be read or isn't an image ImageIO knows.
+	**/
+	public static BufferedImage readScaled(File file, int maxWidth, int maxHeight, ImageLoadListener listener) throws IOException
+	{
+		if (! file.isFile())
+			throw new FileNotFoundException(file.getPath());
+		ImageInputStream in = ImageIO.createImageInputStream(file);
+		if (in == null)
+			throw new IOException("Can't read " + file);
+		return read(in, file.getPath(), listener, maxWidth, maxHeight);
+	}
+	
+	/**
+	**	Decodes an image from a URL scaled down to fit inside a box, see <code>readScaled(File, ...)</code>.
+	**	@param listener Told how far the decode has got. May be null.
+	**	@throws IOException if the URL can't be read or isn't an image ImageIO knows.
+	**/
+	public static BufferedImage readScaled(URL url, int maxWidth, int maxHeight, ImageLoadListener listener) throws IOException
+	{
+		if (url == null)
+			throw new FileNotFoundException("No image given");
+		InputStream stream = url.openStream();
+		try
+		{
+			ImageInputStream in = ImageIO.createImageInputStream(stream);
+			if (in == null)
+				throw new IOException("Can't read " + url);
+			return read(in, url.toExternalForm(), listener, maxWidth, maxHeight);
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+	
+	private static BufferedImage cached(String source, ImageLoadListener listener)
+	{
+		BufferedImage image = ImageCache.getShared().get(source, ImageCache.ORIGINAL, ImageCache.ORIGINAL);
+		if (image != null && listener != null)
+			listener.imageProgress(1.0f);
+		return image;
+	}
+	
+	private static BufferedImage cache(String source, BufferedImage image)
+	{
+		ImageCache.getShared().put(source, ImageCache.ORIGINAL, ImageCache.ORIGINAL, image);
+		return image;
+	}
+	
+	/**
+	**	Decodes the first image in a stream, scaled to fit inside a box unless its width is 0. Scaled images are decoded
+	**		skipping all but every n-th row and column, keeping them at least twice the size wanted so the scaler still
+	**		averages over more than one pixel, then scaled the rest of the way by <code>ImageScaler</code>.
+	**/
+	private static BufferedImage read(ImageInputStream in, String name, ImageLoadListener listener, int maxWidth, int maxHeight) throws IOException
+	{
+		try
+		{
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+			if (! readers.hasNext())
+				throw new IOException(name + " isn't an image that can be read");
+			ImageReader reader = readers.next();
+			try
+			{
+				reader.setInput(in, true, true);
+				Progress progress = new Progress(listener);
+				reader.addIIOReadProgressListener(progress);
+				ImageReadParam param = reader.getDefaultReadParam();
+				Dimension size = null;
+				if (maxWidth > 0)
+				{
+					int width = reader.getWidth(0);
+					int height = reader.getHeight(0);
+					size = ImageScaler.fitSize(width, height, maxWidth, maxHeight);
+					int step = Math.min(width / (2 * size.width), height / (2 * size.height));
+					if (step > 1)
+						param.setSourceSubsampling(step, step, 0, 0);
+				}
+				BufferedImage image = reader.read(0, param);
+				if (progress.aborted)
+					throw new InterruptedIOException("Stopped loading " + name);
+				return (size == null) ? image : ImageScaler.scale(image, size.width, size.height);
+			}
+			finally
+			{
+				reader.dispose();
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+	
+	/**
+	**	Passes a reader's progress on to a listener, and stops the reader if its thread has been interrupted.
+	**/
+	private static class Progress implements IIOReadProgressListener
+	{
+		private final ImageLoadListener listener;
+		private boolean aborted;
+		
+		public Progress(ImageLoadListener listener)
+		{
+			this.listener = listener;
+			aborted = false;
+		}
+		
+		public void imageStarted(ImageReader source, int imageIndex)
+		{
+			if (listener != null)
+				listener.imageProgress(0.0f);
+		}
+		
+		public void imageProgress(ImageReader source, float percentageDone)
+		{
+			if (Thread.currentThread().isInterrupted())
+			{
+				aborted = true;
+				source.abort();
+			}
+			else if (listener != null)
+				listener.imageProgress(percentageDone / 100.0f);
+		}
+		
+		public void imageComplete(ImageReader source)
+		{
+			if (listener != null)
+				listener.imageProgress(1.0f);
+		}
+		
+		public void readAborted(ImageReader source)
+		{
+			aborted = true;
+		}
+		
+		public void sequenceStarted(ImageReader source, int minIndex) { }
+		
+		public void sequenceComplete(ImageReader source) { }
+		
+		public void thumbnailStarted(ImageReader source, int imageIndex, int thumbnailIndex) { }
+		
+		public void thumbnailProgress(ImageReader source, float percentageDone) { }
+		
+		public void thumbnailComplete(ImageReader source) { }
+	}
+}
\ No newline at end of file
@@ -0,0 +1,16 @@
+package convcomm.engine.util;
+
+/**
+**	A <code>GameLoop</code> that can draw its moving things part way between updates. When the engine runs with a fixed
+**		timestep, updates don't line up with frames, so before each draw the engine says how far the current moment is
+**		past the last update; drawing things that far from their previous position towards their current one keeps motion
+**		smooth at any frame rate.
+**/
+public interface Interpolatable
+{
+	/**
+	**	Sets how far between the last two updates the next draw is, from 0 for the one before to 1 for the last.
+	**		Always 1 when the engine isn't using a fixed timestep.
+	**/
+	public void setInterpolation(float alpha);
+}
\ No newline at end of file
@@ -0,0 +1,80 @@
+package convcomm.engine.util;
+
+import java.lang.management.ManagementFactory;
+import javax.management.*;
+
+/**
+**	Publishes MBeans on the platform MBean server, so monitoring tools can read the engine's numbers over JMX. Every
+**		bean's getters read counters the engine keeps anyway, without locks, so being watched never slows a frame down.
+**
+**	<p>Beans are named <code>convcomm.engine:type=</code><i>type</i><code>,name=</code><i>name</i>. Registering a name
+**		that's already taken replaces the old bean. Failures are printed and otherwise ignored: the game runs the same
+**		whether it can be monitored or not.</p>
+**/
+public class Monitoring
+{
+	public static final String DOMAIN = "convcomm.engine";
+	
+	private Monitoring() {}
+	
+	/**
+	**	@return The name the bean was registered under, or null if it couldn't be.
+	**/
+	public static ObjectName register(String type, String name, Object mbean)
+	{
+		try
+		{
+			ObjectName objectName = new ObjectName(DOMAIN + ":type=" + value(type) + ",name=" + value(name));
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(objectName))
+				server.unregisterMBean(objectName);
+			server.registerMBean(mbean, objectName);
+			return objectName;
+		}
+		catch (JMException jme)
+		{
+			System.out.println("Couldn't register " + type + " " + name + " for monitoring: " + jme.getMessage());
+			return null;
+		}
+	}
+	
+	/**
+	**	Removes a bean, if it's still there. Does nothing given null.
+	**/
+	public static void unregister(ObjectName objectName)
+	{
+		if (objectName == null)
+			return;
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(objectName))
+				server.unregisterMBean(objectName);
+		}
+		catch (JMException jme)
+		{
+			System.out.println("Couldn't unregister " + objectName + ": " + jme.getMessage());
+		}
+	}
+	
+	/**
+	**	Quotes a name part only if it has characters that need it, so plain names read plainly.
+	**/
+	private static String value(String s)
+	{
+		for (int i = 0; i < s.length(); ++i)
+		{
+			if (",=:\"*?\\\n".indexOf(s.charAt(i)) != -1)
+				return ObjectName.quote(s);
+		}
+		return s;
+	}
+	
+	/**
+	**	Converts nanoseconds to milliseconds, which is what the beans report times in.
+	**/
+	static double millis(long nanos)
+	{
+		return nanos / 1000000.0;
+	}
+}
\ No newline at end of file
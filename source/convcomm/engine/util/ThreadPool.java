@@ -1,19 +1,27 @@
 package convcomm.engine.util;
 
 import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.ObjectName;
 
 /**
 **	@author David Brackeen from Developing Games in Java copyright 2004
 **	@version 1.0
 **	A thread pool is a group of a limtited number of threads that are used to execute tasks.
+**	<p>Each pool publishes its queue depth, busy threads and task times over JMX as a <code>ThreadPoolMonitor</code>.</p>
 **/
 public class ThreadPool extends ThreadGroup
 {
-	private boolean isAlive;
-	private LinkedList<Runnable> taskQueue;
+	private volatile boolean isAlive;
+	private LinkedList<QueuedTask> taskQueue;
 	private int threadID;
 	private Thread[] threads;
 	private static int threadPoolID;
+	private final AtomicInteger queueDepth, activeThreads;
+	private final AtomicLong failedTasks;
+	private final Histogram queueLatency, taskTimes;
+	private ObjectName monitorName;
 	
 	/**
 	**	Creates a new ThreadPool.
@@ -26,13 +34,19 @@ public class ThreadPool extends ThreadGroup
 		
 		isAlive = true;
 		
-		taskQueue = new LinkedList<Runnable>();
+		taskQueue = new LinkedList<QueuedTask>();
+		queueDepth = new AtomicInteger();
+		activeThreads = new AtomicInteger();
+		failedTasks = new AtomicLong();
+		queueLatency = new Histogram();
+		taskTimes = new Histogram();
 		threads = new Thread[numThreads];
 		for (int i = 0; i < numThreads; ++i)
 		{
 			threads[i] = new PooledThread();
 			threads[i].start();
 		}
+		monitorName = Monitoring.register("ThreadPool", getName(), new ThreadPoolMonitor(this));
 	}
 	
 	/**
@@ -47,7 +61,10 @@ public class ThreadPool extends ThreadGroup
 		if (!isAlive)
 			throw new IllegalStateException();
 		if (task != null)
-			taskQueue.add(task);
+		{
+			taskQueue.add(new QueuedTask(task));
+			queueDepth.incrementAndGet();
+		}
 		notify();
 	}
 	
@@ -59,6 +76,7 @@ public class ThreadPool extends ThreadGroup
 				return null;
 			wait();
 		}
+		queueDepth.decrementAndGet();
 		return taskQueue.removeFirst();
 	}
 	
@@ -73,7 +91,10 @@ public class ThreadPool extends ThreadGroup
 		{
 			isAlive = false;
 			taskQueue.clear();
+			queueDepth.set(0);
 			interrupt();
+			Monitoring.unregister(monitorName);
+			monitorName = null;
 		}
 	}
 	
@@ -86,6 +107,7 @@ public class ThreadPool extends ThreadGroup
 		if (isAlive)
 		{
 			taskQueue.clear();
+			queueDepth.set(0);
 			for (Thread t : threads)
 			{
 				System.out.println("\tAttempting to stop thread: " + t);
@@ -106,6 +128,8 @@ public class ThreadPool extends ThreadGroup
 		{
 			isAlive = false;
 			notifyAll();
+			Monitoring.unregister(monitorName);
+			monitorName = null;
 		}
 		
 		// Wait for all threads to finish
@@ -126,6 +150,94 @@ public class ThreadPool extends ThreadGroup
 	
 	protected void threadStarted() { }
 	
+	public int getThreadCount()
+	{
+		return threads.length;
+	}
+	
+	/**
+	**	Returns the number of threads running a task right now.
+	**/
+	public int getActiveThreads()
+	{
+		return activeThreads.get();
+	}
+	
+	/**
+	**	Returns the number of tasks waiting for a thread.
+	**/
+	public int getQueueDepth()
+	{
+		return queueDepth.get();
+	}
+	
+	/**
+	**	Returns how long tasks have waited to start, in nanoseconds.
+	**/
+	public Histogram getQueueLatency()
+	{
+		return queueLatency;
+	}
+	
+	/**
+	**	Returns how long tasks have taken to run, in nanoseconds. Its count is the number of tasks that have ended, failed ones included.
+	**/
+	public Histogram getTaskTimes()
+	{
+		return taskTimes;
+	}
+	
+	/**
+	**	Returns the number of tasks that threw instead of finishing.
+	**/
+	public long getFailedTasks()
+	{
+		return failedTasks.get();
+	}
+	
+	/**
+	**	Returns false once the pool is closed or joined.
+	**/
+	public boolean isPoolAlive()
+	{
+		return isAlive;
+	}
+	
+	/**
+	**		A task with the time it was queued, which times itself when it runs.
+	**/
+	private class QueuedTask implements Runnable
+	{
+		private final Runnable task;
+		private final long queuedAt;
+		
+		public QueuedTask(Runnable task)
+		{
+			this.task = task;
+			queuedAt = System.nanoTime();
+		}
+		
+		public void run()
+		{
+			long start = System.nanoTime();
+			queueLatency.record(start - queuedAt);
+			activeThreads.incrementAndGet();
+			boolean finished = false;
+			try
+			{
+				task.run();
+				finished = true;
+			}
+			finally
+			{
+				activeThreads.decrementAndGet();
+				taskTimes.record(System.nanoTime() - start);
+				if (! finished)
+					failedTasks.incrementAndGet();
+			}
+		}
+	}
+	
 	/**
 	**		A PooledThread is a Thread in a ThreadPool group, designed to run tasks.
 	**/
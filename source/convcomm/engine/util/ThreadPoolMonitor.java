@@ -0,0 +1,69 @@
+package convcomm.engine.util;
+
+/**
+**	Publishes a <code>ThreadPool</code>'s queue and task times. Every pool registers one when it's made.
+**/
+public class ThreadPoolMonitor implements ThreadPoolMonitorMBean
+{
+	private final ThreadPool pool;
+	
+	public ThreadPoolMonitor(ThreadPool pool)
+	{
+		this.pool = pool;
+	}
+	
+	public int getThreadCount()
+	{
+		return pool.getThreadCount();
+	}
+	
+	public int getActiveThreads()
+	{
+		return pool.getActiveThreads();
+	}
+	
+	public int getQueueDepth()
+	{
+		return pool.getQueueDepth();
+	}
+	
+	public long getCompletedTasks()
+	{
+		return pool.getTaskTimes().getCount();
+	}
+	
+	public long getFailedTasks()
+	{
+		return pool.getFailedTasks();
+	}
+	
+	public double getQueueLatencyP50()
+	{
+		return Monitoring.millis(pool.getQueueLatency().getPercentile(0.5));
+	}
+	
+	public double getQueueLatencyP99()
+	{
+		return Monitoring.millis(pool.getQueueLatency().getPercentile(0.99));
+	}
+	
+	public double getQueueLatencyMax()
+	{
+		return Monitoring.millis(pool.getQueueLatency().getMax());
+	}
+	
+	public double getTaskTimeP50()
+	{
+		return Monitoring.millis(pool.getTaskTimes().getPercentile(0.5));
+	}
+	
+	public double getTaskTimeP99()
+	{
+		return Monitoring.millis(pool.getTaskTimes().getPercentile(0.99));
+	}
+	
+	public boolean isAlive()
+	{
+		return pool.isPoolAlive();
+	}
+}
\ No newline at end of file
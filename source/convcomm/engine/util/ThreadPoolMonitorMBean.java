@@ -0,0 +1,24 @@
+package convcomm.engine.util;
+
+/**
+**	What a <code>ThreadPool</code> publishes over JMX, see <code>Monitoring</code>. Times are in milliseconds.
+**/
+public interface ThreadPoolMonitorMBean
+{
+	public int getThreadCount();
+	/**Threads running a task right now.**/
+	public int getActiveThreads();
+	/**Tasks waiting for a thread.**/
+	public int getQueueDepth();
+	public long getCompletedTasks();
+	/**Tasks that ended by throwing.**/
+	public long getFailedTasks();
+	/**How long tasks waited in the queue before starting.**/
+	public double getQueueLatencyP50();
+	public double getQueueLatencyP99();
+	public double getQueueLatencyMax();
+	/**How long tasks took to run once started.**/
+	public double getTaskTimeP50();
+	public double getTaskTimeP99();
+	public boolean isAlive();
+}
\ No newline at end of file